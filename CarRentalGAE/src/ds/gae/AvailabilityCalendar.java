@@ -0,0 +1,57 @@
+package ds.gae;
+
+import java.io.Serializable;
+
+/**
+ * The number of free cars of a car type of a car rental company on every day
+ * of a period of epoch days.
+ *
+ * A calendar belongs to a version of the reservations of its car type. Every
+ * confirmation or cancellation for the car type starts a new version, so a
+ * calendar of an older version is out of date.
+ */
+public class AvailabilityCalendar implements Serializable {
+
+    private static final long serialVersionUID = 4179236541289376218L;
+
+    private final String company;
+    private final String carType;
+    private final long version;
+    private final int fromDay;
+    private final int[] freeCars;
+
+    AvailabilityCalendar(String company, String carType, long version, int fromDay, int[] freeCars) {
+        this.company = company;
+        this.carType = carType;
+        this.version = version;
+        this.fromDay = fromDay;
+        this.freeCars = freeCars;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    public String getCarType() {
+        return carType;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getFromDay() {
+        return fromDay;
+    }
+
+    public int getNbOfDays() {
+        return freeCars.length;
+    }
+
+    /**
+     * Get the number of free cars on the given epoch day, which must lie within the calendar.
+     */
+    public int getFreeCars(int day) {
+        return freeCars[day - fromDay];
+    }
+}
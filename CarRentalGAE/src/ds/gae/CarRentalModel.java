@@ -1,43 +1,96 @@
 package ds.gae;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import javax.persistence.EntityManager;
-import javax.persistence.EntityTransaction;
-import javax.persistence.Query;
-import javax.persistence.TypedQuery;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 
 import ds.gae.entities.Car;
 import ds.gae.entities.CarRentalCompany;
 import ds.gae.entities.CarType;
+import ds.gae.entities.CarTypeFilter;
+import ds.gae.entities.Confirmation;
 import ds.gae.entities.Quote;
 import ds.gae.entities.Reservation;
 import ds.gae.entities.ReservationConstraints;
+import ds.gae.metrics.LatencyHistogram;
+import ds.gae.metrics.Metrics;
+import ds.gae.storage.CarRentalRepository;
+import ds.gae.storage.CarRentalRepository.CompanyReader;
+import ds.gae.storage.Repositories;
  
 public class CarRentalModel {
 		
-	private static CarRentalModel instance;
-    private EntityManager em;
+	private static final Logger logger = Logger.getLogger(CarRentalModel.class.getName());
+	private static final CarRentalModel instance = new CarRentalModel();
+	private static final int MAX_CONFIRM_ATTEMPTS = 3;
+	// longer than a task of the task queue may run
+	private static final long CONFIRMATION_LEASE_MILLIS = Long.getLong("ds.gae.confirmation.leaseSeconds", 900) * 1000;
+	
+	private static final String LATENCY = "carrental_model_latency_seconds";
+	private static final AtomicLong quotesCreated = Metrics.get().counter("carrental_quotes_created_total");
+	private static final AtomicLong reservationsConfirmed = Metrics.get().counter("carrental_reservations_confirmed_total");
+	// failed confirmation transactions and undone confirmations of companies
+	private static final AtomicLong rollbacks = Metrics.get().counter("carrental_confirmation_rollbacks_total");
+	private static final AtomicLong reservationsArchived = Metrics.get().counter("carrental_reservations_archived_total");
+	private static final AtomicLong searchTimeouts = Metrics.get().counter("carrental_search_timeouts_total");
+	private static final int SEARCH_PARALLELISM = Integer.getInteger("ds.gae.search.parallelism", 4);
+	private static final long SEARCH_BUDGET_MILLIS = Long.getLong("ds.gae.search.budgetMillis", 2000);
+	public static final int MAX_AVAILABILITY_DAYS = 366;
+	
+	private final CarRentalRepository repository;
+	private final CarTypeLocks carTypeLocks = new CarTypeLocks(64);
+	private final QuoteHolds quoteHolds = QuoteHolds.get();
 
 	public static CarRentalModel get() {
-		if (instance == null)
-			instance = new CarRentalModel();
 		return instance;
 	}
 	
-	private EntityManager getEntityManager()
-    {
-        if(em == null || !em.isOpen())
-        {
-            em = EMF.get().createEntityManager();
-        }
-        return em;
-    }
-		
+	private CarRentalModel() {
+		this(Repositories.create());
+	}
+	
+	// for tests on a repository of their own
+	CarRentalModel(CarRentalRepository repository) {
+		this.repository = repository;
+	}
+	
+	private static LatencyHistogram.Timer time(String method)
+	{
+	    return Metrics.get().histogram(LATENCY, "method", method).time();
+	}
+	
+	private static void reservationFailed(String operation)
+	{
+	    Metrics.get().counter("carrental_reservation_exceptions_total", "operation", operation).incrementAndGet();
+	}
+	
 	/**
 	 * Get the car types available in the given car rental company.
 	 *
@@ -46,27 +99,33 @@ public class CarRentalModel {
 	 * @return	The list of car types (i.e. name of car type), available
 	 * 			in the given car rental company.
 	 */
-	@SuppressWarnings("unchecked")
-    public Set<String> getCarTypesNames(String company) 
+    public Set<String> getCarTypesNames(final String company) 
 	{
-	    try
+	    try (LatencyHistogram.Timer timer = time("getCarTypesNames"))
 	    {
-            Set<String> out = new HashSet<>();
-            Query query = getEntityManager().createQuery("SELECT company.carTypes FROM CarRentalCompany company WHERE company.name = :name");
-            query.setParameter("name", company);
-            List<Set<CarType>> resultList = query.getResultList();
-            if(resultList.size() > 0)
-            {
-                Set<CarType> types = resultList.get(0);
-                for (CarType type: types)
-                    out.add(type.getName());
-            }
-            return out;
-        } 
-	    finally 
-	    {
-            getEntityManager().close();
-        }
+		    return new HashSet<>(CatalogCache.get().get(CatalogCache.carTypeNamesKey(company), new CatalogCache.Loader<HashSet<String>>() {
+		        @Override
+		        public HashSet<String> load() {
+		            return loadCarTypesNames(company);
+		        }
+		    }));
+	    }
+	}
+	
+	private HashSet<String> loadCarTypesNames(String company)
+	{
+	    return repository.readCompany(company, new CompanyReader<HashSet<String>, RuntimeException>() {
+	        @Override
+	        public HashSet<String> read(CarRentalCompany crc) {
+	            HashSet<String> out = new HashSet<>();
+	            if(crc != null)
+	            {
+	                for (CarType type: crc.getCarTypes())
+	                    out.add(type.getName());
+	            }
+	            return out;
+	        }
+	    });
 	}
 
     /**
@@ -76,20 +135,75 @@ public class CarRentalModel {
      */
     public Collection<String> getAllRentalCompanyNames() 
     {
-        try
+        try (LatencyHistogram.Timer timer = time("getAllRentalCompanyNames"))
         {
-            TypedQuery<String> query = getEntityManager().createQuery("SELECT company.name FROM CarRentalCompany company", String.class);
-            List<String> resultList = query.getResultList();
-            return resultList;
-        } 
-        finally 
+            return new ArrayList<>(CatalogCache.get().get(CatalogCache.companyNamesKey(), new CatalogCache.Loader<ArrayList<String>>() {
+                @Override
+                public ArrayList<String> load() {
+                    return loadAllRentalCompanyNames();
+                }
+            }));
+        }
+    }
+    
+    private ArrayList<String> loadAllRentalCompanyNames()
+    {
+        return new ArrayList<>(repository.getCompanyNames());
+    }
+    
+    /**
+     * Check whether a car rental company with the given name is registered.
+     */
+    public boolean hasRentalCompany(String name)
+    {
+        try (LatencyHistogram.Timer timer = time("hasRentalCompany"))
         {
-            getEntityManager().close();
+            return repository.hasCompany(name);
+        }
+    }
+    
+    /**
+     * Register the given new car rental company, with its car types and cars.
+     */
+    public void addRentalCompany(CarRentalCompany company)
+    {
+        try (LatencyHistogram.Timer timer = time("addRentalCompany"))
+        {
+            repository.addCompany(company);
+            CatalogCache.get().invalidateCompany(company.getName());
+        }
+    }
+    
+    /**
+     * Add the given car type, without cars, to the given car rental company, 
+     * unless the company already has a car type with the same name.
+     */
+    public void addCarType(String company, CarType carType)
+    {
+        try (LatencyHistogram.Timer timer = time("addCarType"))
+        {
+            repository.addCarType(company, carType);
+            CatalogCache.get().invalidateCompany(company);
+        }
+    }
+    
+    /**
+     * Add the given number of new cars of the given car type to the given car rental company.
+     * Either all cars are added, or none.
+     */
+    public void addCars(String company, String carType, int nbOfCars)
+    {
+        try (LatencyHistogram.Timer timer = time("addCars"))
+        {
+            repository.addCars(company, carType, nbOfCars);
+            CatalogCache.get().invalidateCompany(company);
+            CatalogCache.get().invalidate(CatalogCache.availabilityVersionKey(company, carType));
         }
     }
 	
 	/**
 	 * Create a quote according to the given reservation constraints (tentative reservation).
+	 * A car is held for the quote for a while, see {@link QuoteHolds}.
 	 * 
 	 * @param	company
 	 * 			name of the car renter company
@@ -102,29 +216,223 @@ public class CarRentalModel {
 	 * @throws ReservationException
 	 * 			No car available that fits the given constraints.
 	 */
-    public Quote createQuote(String company, String renterName, ReservationConstraints constraints) throws ReservationException 
+    public Quote createQuote(final String company, final String renterName, final ReservationConstraints constraints) throws ReservationException 
     {    	
-        try
+        try (LatencyHistogram.Timer timer = time("createQuote"))
+        {
+            Quote quote = repository.readCompany(company, new CompanyReader<Quote, ReservationException>() {
+                @Override
+                public Quote read(CarRentalCompany crc) throws ReservationException {
+                    if(crc == null)
+                        throw new ReservationException("CarRentalCompany '" + company + "' not found.");
+                    Quote quote = crc.createQuote(constraints, renterName);
+                    quoteHolds.hold(quote, crc.getCarType(quote.getCarType()));
+                    return quote;
+                }
+            });
+            quotesCreated.incrementAndGet();
+            return quote;
+        }
+        catch(ReservationException e)
         {
-            TypedQuery<CarRentalCompany> query = getEntityManager().createQuery("SELECT company FROM CarRentalCompany company WHERE company.name = :name", CarRentalCompany.class);
-            query.setParameter("name", company);
-            List<CarRentalCompany> resultList = query.getResultList();
-        	Quote out = null;
+            reservationFailed("quote");
+            throw e;
+        }
+    }
     
-            if (resultList.size() > 0) 
+    /**
+     * Create a quote for each of the given reservation constraints, which must name
+     * their car rental company. Every company is read only once, for all constraints
+     * that name it. A constraint that cannot be quoted does not stop the others. 
+     * A car is held for every quote, as for {@link #createQuote}.
+     * 
+     * @param   constraints
+     *          the reservation constraints to quote, each with a company
+     * @param   renterName
+     *          name of the car renter
+     * @return  The outcome for every given constraint, in the same order.
+     */
+    public List<QuoteResult> createQuotes(final List<ReservationConstraints> constraints, final String renterName)
+    {
+        try (LatencyHistogram.Timer timer = time("createQuotes"))
+        {
+            final QuoteResult[] results = new QuoteResult[constraints.size()];
+            Map<String, List<Integer>> perCompany = new LinkedHashMap<>();
+            for(int i = 0; i < constraints.size(); i++)
             {
-                out = resultList.get(0).createQuote(constraints, renterName);
-            } 
-            else 
+                String company = constraints.get(i).getCompany();
+                if(company == null)
+                {
+                    results[i] = QuoteResult.failed(constraints.get(i), "No car rental company given.");
+                    continue;
+                }
+                List<Integer> indexes = perCompany.get(company);
+                if(indexes == null)
+                {
+                    indexes = new ArrayList<>();
+                    perCompany.put(company, indexes);
+                }
+                indexes.add(i);
+            }
+            
+            for(final Map.Entry<String, List<Integer>> entry : perCompany.entrySet())
             {
-            	throw new ReservationException("CarRentalCompany '" + company + "' not found.");    	
+                repository.readCompany(entry.getKey(), new CompanyReader<Void, RuntimeException>() {
+                    @Override
+                    public Void read(CarRentalCompany crc) {
+                        for(int i : entry.getValue())
+                        {
+                            if(crc == null)
+                                results[i] = QuoteResult.failed(constraints.get(i), "CarRentalCompany '" + entry.getKey() + "' not found.");
+                            else
+                                results[i] = createQuote(crc, constraints.get(i), renterName);
+                        }
+                        return null;
+                    }
+                });
             }
             
+            List<QuoteResult> out = Arrays.asList(results);
+            for(QuoteResult result : out)
+            {
+                if(result.isQuoted())
+                    quotesCreated.incrementAndGet();
+                else
+                    reservationFailed("quote");
+            }
             return out;
         }
+    }
+    
+    private QuoteResult createQuote(CarRentalCompany crc, ReservationConstraints constraints, String renterName)
+    {
+        try
+        {
+            Quote quote = crc.createQuote(constraints, renterName);
+            quoteHolds.hold(quote, crc.getCarType(quote.getCarType()));
+            return QuoteResult.quoted(constraints, quote);
+        }
+        catch(ReservationException | IllegalArgumentException e)
+        {
+            // an unknown car type or an illegal period only fails this constraint
+            return QuoteResult.failed(constraints, e.getMessage());
+        }
+    }
+    
+    /**
+     * Search all car rental companies, or only the company of the given constraints
+     * if it names one, for the cheapest quotes that fit the given constraints and filter.
+     * Companies are searched in parallel, on at most <code>ds.gae.search.parallelism</code> 
+     * threads. Companies that have not answered after <code>ds.gae.search.budgetMillis</code> 
+     * milliseconds are left out of the result, as are companies that fail. 
+     * A search of a single company runs on the calling thread, without a time budget.
+     * No cars are held for the quotes found.
+     * 
+     * @param   renterName
+     *          name of the car renter
+     * @param   constraints
+     *          the period and, optionally, the car type and company to search for
+     * @param   filter
+     *          further requirements on the car types
+     * @param   maxQuotes
+     *          the maximum number of quotes to return
+     * @return  The cheapest quotes found, cheapest first, and the companies that were left out.
+     */
+    public QuoteSearchResult searchQuotes(final String renterName, final ReservationConstraints constraints, final CarTypeFilter filter, int maxQuotes)
+    {
+        try (LatencyHistogram.Timer timer = time("searchQuotes"))
+        {
+            List<String> companies = new ArrayList<>();
+            if(constraints.getCompany() != null)
+                companies.add(constraints.getCompany());
+            else
+                companies.addAll(getAllRentalCompanyNames());
+            
+            List<Callable<List<Quote>>> searches = new ArrayList<>();
+            for(final String company : companies)
+            {
+                searches.add(new Callable<List<Quote>>() {
+                    @Override
+                    public List<Quote> call() {
+                        return repository.readCompany(company, new CompanyReader<List<Quote>, RuntimeException>() {
+                            @Override
+                            public List<Quote> read(CarRentalCompany crc) {
+                                if(crc == null)
+                                    return Collections.emptyList();
+                                return crc.createQuotes(constraints, filter, renterName);
+                            }
+                        });
+                    }
+                });
+            }
+            
+            List<Quote> quotes = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            if(searches.size() == 1)
+            {
+                // a thread pool would only add latency, the search runs on the request thread
+                try
+                {
+                    quotes.addAll(searches.get(0).call());
+                }
+                catch(Exception e)
+                {
+                    missing.add(companies.get(0));
+                    logger.log(Level.WARNING, "Searching " + companies.get(0) + " failed", e);
+                }
+            }
+            else if(!searches.isEmpty())
+            {
+                searchInParallel(companies, searches, quotes, missing);
+            }
+            
+            Collections.sort(quotes, new Comparator<Quote>() {
+                @Override
+                public int compare(Quote q1, Quote q2) {
+                    return Double.compare(q1.getRentalPrice(), q2.getRentalPrice());
+                }
+            });
+            List<Quote> cheapest = new ArrayList<>(quotes.subList(0, Math.min(maxQuotes, quotes.size())));
+            quotesCreated.addAndGet(cheapest.size());
+            return new QuoteSearchResult(cheapest, missing);
+        }
+    }
+    
+    // searches the given companies on a thread pool, within the search budget
+    private void searchInParallel(List<String> companies, List<Callable<List<Quote>>> searches, List<Quote> quotes, List<String> missing)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(SEARCH_PARALLELISM, companies.size())), 
+                RequestThreads.factory("quote-search"));
+        try
+        {
+            // searches that are still running when the budget is spent are cancelled
+            List<Future<List<Quote>>> results = executor.invokeAll(searches, SEARCH_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+            for(int i = 0; i < results.size(); i++)
+            {
+                try
+                {
+                    quotes.addAll(results.get(i).get());
+                }
+                catch(CancellationException e)
+                {
+                    missing.add(companies.get(i));
+                    searchTimeouts.incrementAndGet();
+                }
+                catch(ExecutionException e)
+                {
+                    missing.add(companies.get(i));
+                    logger.log(Level.WARNING, "Searching " + companies.get(i) + " failed", e.getCause());
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            missing.addAll(companies);
+            Thread.currentThread().interrupt();
+        }
         finally
         {
-            getEntityManager().close();
+            executor.shutdownNow();
         }
     }
     
@@ -139,24 +447,10 @@ public class CarRentalModel {
 	 */
 	public Reservation confirmQuote(Quote quote) throws ReservationException 
 	{
-	    EntityTransaction transaction = getEntityManager().getTransaction();
-        try 
-        {
-            transaction.begin();
-            CarRentalCompany company = getEntityManager().find(CarRentalCompany.class, quote.getRentalCompany());
-            Reservation reservation = company.confirmQuote(quote);
-            transaction.commit();
-            return reservation;
-        } 
-        catch(ReservationException e) 
-        {
-            transaction.rollback();
-            throw e;
-        } 
-        finally 
-        {
-            getEntityManager().close();
-        }   
+	    try (LatencyHistogram.Timer timer = time("confirmQuote"))
+	    {
+		    return confirmQuotes(quote.getRentalCompany(), Collections.singletonList(quote), null).get(0);
+	    }
 	}
 	
     /**
@@ -172,32 +466,402 @@ public class CarRentalModel {
 	 */
     public List<Reservation> confirmQuotes(List<Quote> quotes) throws ReservationException 
     {    	
-        // TODO: implement a more efficient way to batch process these quotes per company
-		List<Reservation> reservations = new ArrayList<>();
-		try
-		{
-		    for(Quote quote : quotes)
-		    {
-		        reservations.add(confirmQuote(quote));
-		    }
-		    return reservations;
-		}
-		catch(ReservationException ex)
-		{
-		    EntityTransaction transaction = getEntityManager().getTransaction();
-            transaction.begin();
-		    for(Reservation reservation : reservations)
-		    {
-	            CarRentalCompany company = getEntityManager().find(CarRentalCompany.class, reservation.getRentalCompany());
-	            company.cancelReservation(reservation);
-		    }
-            transaction.commit();
-		    throw ex;
-		}
-		finally
-		{
-		    getEntityManager().close();
-		}
+        try (LatencyHistogram.Timer timer = time("confirmQuotes"))
+        {
+            return confirmQuotes(quotes, null, false);
+        }
+    }
+    
+    /**
+     * Confirm the given quotes for the given claimed confirmation, as {@link #confirmQuotes(List)}.
+     * The reservations are stored with the id of the confirmation, in the transactions that 
+     * book them. A delivery that claims the confirmation again, after an earlier delivery 
+     * failed or its claim expired, takes the companies that already have reservations of the
+     * confirmation as committed, rather than booking their quotes again.
+     */
+    List<Reservation> confirmQuotes(Confirmation confirmation, List<Quote> quotes) throws ReservationException
+    {
+        try (LatencyHistogram.Timer timer = time("confirmQuotes"))
+        {
+            return confirmQuotes(quotes, confirmation.getId(), confirmation.getAttempts() > 1);
+        }
+    }
+    
+    private List<Reservation> confirmQuotes(List<Quote> quotes, String confirmationId, boolean resume) throws ReservationException
+    {
+        Map<String, List<Quote>> quotesPerCompany = quotesPerCompany(quotes);
+        List<Reservation> reservations = new ArrayList<>();
+        Map<String, List<Reservation>> committed = new LinkedHashMap<>();
+        try
+        {
+            for(Map.Entry<String, List<Quote>> entry : quotesPerCompany.entrySet())
+            {
+                List<Reservation> companyReservations = resume 
+                        ? getReservations(entry.getKey(), confirmationId) : Collections.<Reservation>emptyList();
+                // booked by an earlier delivery of the confirmation
+                if(!companyReservations.isEmpty())
+                    quoteHolds.release(entry.getValue());
+                else
+                    companyReservations = confirmQuotes(entry.getKey(), entry.getValue(), confirmationId);
+                committed.put(entry.getKey(), companyReservations);
+                reservations.addAll(companyReservations);
+            }
+            return reservations;
+        }
+        catch(ReservationException | RuntimeException ex)
+        {
+            // the failing company has rolled back on its own, whether it was refused
+            // or the datastore gave up, only the companies that were already committed need to be undone
+            for(Map.Entry<String, List<Reservation>> entry : committed.entrySet())
+            {
+                try
+                {
+                    cancelReservations(entry.getKey(), entry.getValue());
+                    rollbacks.incrementAndGet();
+                }
+                catch(RuntimeException e)
+                {
+                    logger.log(Level.SEVERE, "Cannot undo the reservations " + entry.getValue() + " of " + entry.getKey(), e);
+                    ex.addSuppressed(e);
+                }
+            }
+            throw ex;
+        }
+    }
+    
+    private static Map<String, List<Quote>> quotesPerCompany(List<Quote> quotes)
+    {
+        Map<String, List<Quote>> quotesPerCompany = new LinkedHashMap<>();
+        for(Quote quote : quotes)
+        {
+            List<Quote> companyQuotes = quotesPerCompany.get(quote.getRentalCompany());
+            if(companyQuotes == null)
+            {
+                companyQuotes = new ArrayList<>();
+                quotesPerCompany.put(quote.getRentalCompany(), companyQuotes);
+            }
+            companyQuotes.add(quote);
+        }
+        return quotesPerCompany;
+    }
+    
+    /**
+     * Get the reservations of the given company that were booked for the given confirmation.
+     * The company is read as a whole, which, unlike a query, sees every committed reservation.
+     */
+    private List<Reservation> getReservations(String company, final String confirmationId)
+    {
+        return repository.readCompany(company, new CompanyReader<List<Reservation>, RuntimeException>() {
+            @Override
+            public List<Reservation> read(CarRentalCompany crc) {
+                List<Reservation> out = new ArrayList<>();
+                if(crc != null)
+                {
+                    for(Car car : crc.getCars())
+                    {
+                        for(Reservation reservation : car.getReservations())
+                        {
+                            if(confirmationId.equals(reservation.getConfirmationId()))
+                                out.add(reservation);
+                        }
+                    }
+                }
+                return out;
+            }
+        });
+    }
+    
+    /**
+     * Confirm the given quotes of a single car rental company in one transaction.
+     * 
+     * @param   company
+     *          name of the car rental company
+     * @param   quotes
+     *          the quotes to confirm, all for the given company
+     * @param   confirmationId
+     *          the id of the confirmation to store with the reservations, or null
+     * @return  The list of reservations, resulting from confirming all given quotes.
+     * 
+     * @throws  ReservationException
+     *          One of the quotes cannot be confirmed.
+     *          Therefore none of the given quotes is confirmed.
+     */
+    private List<Reservation> confirmQuotes(String company, List<Quote> quotes, String confirmationId) throws ReservationException
+    {
+        Set<String> carTypes = new TreeSet<>();
+        for(Quote quote : quotes)
+        {
+            carTypes.add(quote.getCarType());
+        }
+        
+        CarTypeLocks.Lock lock = carTypeLocks.lock(company, carTypes);
+        List<Quote> placed = Collections.emptyList();
+        try
+        {
+            placed = holdContended(company, quotes);
+            for(int attempt = 1; ; attempt++)
+            {
+                try
+                {
+                    List<Reservation> reservations = tryConfirmQuotes(company, quotes, confirmationId);
+                    reservationsConfirmed.addAndGet(reservations.size());
+                    return reservations;
+                }
+                catch(ReservationException e)
+                {
+                    rollbacks.incrementAndGet();
+                    reservationFailed("confirm");
+                    throw e;
+                }
+                catch(PersistenceException e)
+                {
+                    rollbacks.incrementAndGet();
+                    // the company was changed concurrently, e.g. on another instance
+                    if(!isConcurrentModification(e) || attempt == MAX_CONFIRM_ATTEMPTS)
+                        throw e;
+                    carTypeLocks.recordConflict(company, carTypes);
+                    logger.log(Level.INFO, "Retrying confirmation for {0} after conflict (attempt {1})", new Object[]{company, attempt});
+                }
+            }
+        }
+        finally
+        {
+            // after a confirmation these are released already, as the holds of all quotes
+            quoteHolds.release(placed);
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Hold a car for the given quotes of the given company that have no hold of their own 
+     * but overlap the holds of other quotes, so they do not take the cars held for those.
+     * 
+     * @return  The quotes that were given a hold.
+     * @throws  ReservationException
+     *          One of the quotes only fits in cars that are held for other quotes.
+     */
+    private List<Quote> holdContended(final String company, List<Quote> quotes) throws ReservationException
+    {
+        final List<Quote> contended = new ArrayList<>();
+        for(Quote quote : quotes)
+        {
+            if(!quoteHolds.isHeld(quote) && quoteHolds.isContended(quote))
+                contended.add(quote);
+        }
+        final List<Quote> placed = new ArrayList<>();
+        if(contended.isEmpty())
+            return placed;
+        try
+        {
+            repository.readCompany(company, new CompanyReader<Void, ReservationException>() {
+                @Override
+                public Void read(CarRentalCompany crc) throws ReservationException {
+                    if(crc == null)
+                        throw new ReservationException("CarRentalCompany '" + company + "' not found.");
+                    for(Quote quote : contended)
+                    {
+                        quoteHolds.hold(quote, crc.getCarType(quote.getCarType()));
+                        placed.add(quote);
+                    }
+                    return null;
+                }
+            });
+            return placed;
+        }
+        catch(ReservationException e)
+        {
+            quoteHolds.release(placed);
+            reservationFailed("confirm");
+            throw e;
+        }
+    }
+    
+    private List<Reservation> tryConfirmQuotes(String company, List<Quote> quotes, String confirmationId) throws ReservationException
+    {
+        List<Reservation> reservations = repository.confirmQuotes(company, quotes, confirmationId);
+        // the holds have become reservations
+        quoteHolds.release(quotes);
+        RenterIndex.get().changed(reservations);
+        reservationsChanged(company, reservations);
+        return reservations;
+    }
+    
+    // starts a new version of the availability calendars of the affected car types
+    private void reservationsChanged(String company, Collection<? extends Quote> reservations)
+    {
+        Set<String> carTypes = new HashSet<>();
+        for(Quote reservation : reservations)
+            carTypes.add(reservation.getCarType());
+        for(String carType : carTypes)
+            CatalogCache.get().invalidate(CatalogCache.availabilityVersionKey(company, carType));
+    }
+    
+    private static boolean isConcurrentModification(Throwable e)
+    {
+        for(Throwable cause = e; cause != null; cause = cause.getCause())
+        {
+            if(cause instanceof ConcurrentModificationException || cause instanceof OptimisticLockException)
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Get the number of contended confirmations per "company/car type".
+     */
+    public Map<String, Long> getCarTypeContention()
+    {
+        return carTypeLocks.getContention();
+    }
+    
+    /**
+     * Get the number of confirmations that were retried after a conflict, per "company/car type".
+     */
+    public Map<String, Long> getCarTypeConflicts()
+    {
+        return carTypeLocks.getConflicts();
+    }
+    
+    private void cancelReservations(String company, List<Reservation> reservations)
+    {
+        repository.cancelReservations(company, reservations);
+        RenterIndex.get().changed(reservations);
+        reservationsChanged(company, reservations);
+    }
+    
+    /**
+     * Move the reservations that end on or before the given epoch day to the archive,
+     * in batches of at most batchSize reservations per company. Archived reservations
+     * are no longer checked for availability, but still belong to their car renter.
+     * 
+     * @return  The number of archived reservations.
+     */
+    public int archiveReservations(int horizonDay, int batchSize)
+    {
+        try (LatencyHistogram.Timer timer = time("archiveReservations"))
+        {
+            int total = 0;
+            for(String company : getAllRentalCompanyNames())
+            {
+                // holds off confirmations of the company on this instance while archiving
+                CarTypeLocks.Lock lock = carTypeLocks.lock(company, getCarTypesNames(company));
+                try
+                {
+                    int archived;
+                    do
+                    {
+                        archived = repository.archiveReservations(company, horizonDay, batchSize);
+                        reservationsArchived.addAndGet(archived);
+                        total += archived;
+                    }
+                    while(archived == batchSize);
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+                for(String carType : getCarTypesNames(company))
+                    CatalogCache.get().invalidate(CatalogCache.availabilityVersionKey(company, carType));
+            }
+            logger.log(Level.INFO, "Archived {0} reservations ending by day {1}", new Object[]{total, horizonDay});
+            return total;
+        }
+    }
+	
+    /**
+     * Confirm the given list of quotes asynchronously. The returned confirmation
+     * is pending until the quotes have been confirmed or rejected.
+     * 
+     * @param   renter
+     *          name of the car renter
+     * @param   quotes
+     *          the quotes to confirm
+     * @return  The pending confirmation, which can be polled using its id.
+     */
+    public Confirmation confirmQuotesAsync(String renter, List<Quote> quotes)
+    {
+        try (LatencyHistogram.Timer timer = time("confirmQuotesAsync"))
+        {
+            Confirmation confirmation = new Confirmation(UUID.randomUUID().toString(), renter, quotes.size());
+            repository.addConfirmation(confirmation);
+            ConfirmationQueue.get().enqueue(new Task(confirmation.getId(), quotes));
+            return confirmation;
+        }
+    }
+    
+    /**
+     * Get the confirmation with the given id.
+     * 
+     * @param   id
+     *          id of the confirmation
+     * @return  The confirmation, or null if there is no confirmation with the given id.
+     */
+    public Confirmation getConfirmation(String id)
+    {
+        try (LatencyHistogram.Timer timer = time("getConfirmation"))
+        {
+            return repository.getConfirmation(id);
+        }
+    }
+    
+    /**
+     * Get the confirmations of the given car renter, most recent first.
+     * 
+     * @param   renter
+     *          name of the car renter
+     * @return  the list of confirmations of the given car renter
+     */
+    public List<Confirmation> getConfirmations(String renter)
+    {
+        try (LatencyHistogram.Timer timer = time("getConfirmations"))
+        {
+            List<Confirmation> out = new ArrayList<>(repository.getConfirmations(renter));
+            Collections.sort(out, new Comparator<Confirmation>() {
+                @Override
+                public int compare(Confirmation c1, Confirmation c2) {
+                    return c2.getCreated().compareTo(c1.getCreated());
+                }
+            });
+            return out;
+        }
+    }
+    
+    /**
+     * Claim the confirmation with the given id for the delivery of the task that books 
+     * its quotes, for <code>ds.gae.confirmation.leaseSeconds</code> seconds.
+     * 
+     * @return  The claimed confirmation, or null if the confirmation does not exist, 
+     *          is done or is claimed by another delivery.
+     */
+    Confirmation claimConfirmation(String id)
+    {
+        return repository.claimConfirmation(id, CONFIRMATION_LEASE_MILLIS);
+    }
+    
+    /**
+     * Record the outcome of the confirmation with the given id.
+     */
+    void updateConfirmation(String id, Confirmation.Status status, String message)
+    {
+        repository.updateConfirmation(id, status, message);
+    }
+    
+    /**
+     * Give up on the confirmation with the given id of the given quotes: undo the reservations
+     * that were booked for it, and record it as failed with the given message.
+     */
+    void failConfirmation(String id, List<Quote> quotes, String message)
+    {
+        for(String company : quotesPerCompany(quotes).keySet())
+        {
+            List<Reservation> booked = getReservations(company, id);
+            if(!booked.isEmpty())
+            {
+                cancelReservations(company, booked);
+                rollbacks.incrementAndGet();
+            }
+        }
+        repository.updateConfirmation(id, Confirmation.Status.FAILED, message);
     }
 	
 	/**
@@ -209,22 +873,64 @@ public class CarRentalModel {
 	 */
 	public List<Reservation> getReservations(String renter) 
 	{
-		
-		List<Reservation> out = new ArrayList<Reservation>();
-        try
-        {
-            TypedQuery<Reservation> query = getEntityManager().createQuery("SELECT reservation FROM Reservation reservation WHERE reservation.carRenter = :renter", Reservation.class);
-            query.setParameter("renter", renter);
-            out.addAll(query.getResultList());
-            return out;
-        } 
-        finally 
+	    try (LatencyHistogram.Timer timer = time("getReservations"))
+	    {
+			long version = RenterIndex.get().version(renter);
+			// the index only knows whether there are reservations, so only a renter without spares the query
+			if(Boolean.FALSE.equals(RenterIndex.get().hasReservations(renter, version)))
+			    return new ArrayList<Reservation>();
+			List<Reservation> out = new ArrayList<Reservation>(repository.getReservations(renter));
+			RenterIndex.get().put(renter, version, !out.isEmpty());
+			return out;
+	    }
+    }
+
+    /**
+     * Get the number of free cars of the given car type on every day of the given period.
+     * Calendars are cached until a reservation of the car type is confirmed or cancelled,
+     * see {@link AvailabilityCalendar}.
+     * 
+     * @param   company
+     *          name of the car rental company
+     * @param   carType
+     *          name of the car type
+     * @param   fromDay
+     *          the first epoch day of the period
+     * @param   nbOfDays
+     *          the length of the period, at most {@link #MAX_AVAILABILITY_DAYS} days
+     * @throws  IllegalArgumentException
+     *          The company or car type does not exist, or the period is too long.
+     */
+    public AvailabilityCalendar getAvailabilityCalendar(final String company, final String carType, final int fromDay, final int nbOfDays)
+    {
+        try (LatencyHistogram.Timer timer = time("getAvailabilityCalendar"))
         {
-            getEntityManager().close();
+            if(nbOfDays < 1 || nbOfDays > MAX_AVAILABILITY_DAYS)
+                throw new IllegalArgumentException("A calendar spans 1 to " + MAX_AVAILABILITY_DAYS + " days");
+            final long version = CatalogCache.get().getShared(CatalogCache.availabilityVersionKey(company, carType), new CatalogCache.Loader<Long>() {
+                @Override
+                public Long load() {
+                    // random, so instances that start a version at the same time do not pick the same
+                    return ThreadLocalRandom.current().nextLong();
+                }
+            });
+            return CatalogCache.get().get(CatalogCache.availabilityKey(company, carType, version, fromDay, nbOfDays), new CatalogCache.Loader<AvailabilityCalendar>() {
+                @Override
+                public AvailabilityCalendar load() {
+                    return repository.readCompany(company, new CompanyReader<AvailabilityCalendar, RuntimeException>() {
+                        @Override
+                        public AvailabilityCalendar read(CarRentalCompany crc) {
+                            if(crc == null)
+                                throw new IllegalArgumentException("CarRentalCompany '" + company + "' not found.");
+                            int[] freeCars = crc.getCarType(carType).getFreeCarsPerDay(fromDay, nbOfDays);
+                            return new AvailabilityCalendar(company, carType, version, fromDay, freeCars);
+                        }
+                    });
+                }
+            });
         }
-
     }
-
+    
     /**
      * Get the car types available in the given car rental company.
      *
@@ -232,26 +938,38 @@ public class CarRentalModel {
      * 			the given car rental company
      * @return	The list of car types in the given car rental company.
      */
-    @SuppressWarnings("unchecked")
-    public Collection<CarType> getCarTypesOfCarRentalCompany(String company) 
+    public Collection<CarType> getCarTypesOfCarRentalCompany(final String company) 
     {
-        try
-        {
-            Collection<CarType> carTypes = new HashSet<>();
-            Query query = getEntityManager().createQuery("SELECT company.carTypes FROM CarRentalCompany company WHERE company.name = :name");
-            query.setParameter("name", company);
-            List<Collection<CarType>> resultList = query.getResultList();
-            if(resultList.size() > 0)
-            {
-                carTypes.addAll(resultList.get(0));
-            }
-            return carTypes;
-        } 
-        finally 
+        try (LatencyHistogram.Timer timer = time("getCarTypesOfCarRentalCompany"))
         {
-            getEntityManager().close();
+            return new HashSet<>(CatalogCache.get().get(CatalogCache.carTypesKey(company), new CatalogCache.Loader<ArrayList<CarType>>() {
+                @Override
+                public ArrayList<CarType> load() {
+                    return loadCarTypesOfCarRentalCompany(company);
+                }
+            }));
         }
     }
+    
+    /**
+     * Load the car types of the given company, detached from their cars so 
+     * they can be cached.
+     */
+    private ArrayList<CarType> loadCarTypesOfCarRentalCompany(String company)
+    {
+        return repository.readCompany(company, new CompanyReader<ArrayList<CarType>, RuntimeException>() {
+            @Override
+            public ArrayList<CarType> read(CarRentalCompany crc) {
+                ArrayList<CarType> carTypes = new ArrayList<>();
+                if(crc != null)
+                {
+                    for(CarType type : crc.getCarTypes())
+                        carTypes.add(type.copyWithoutCars());
+                }
+                return carTypes;
+            }
+        });
+    }
 	
     /**
      * Get the list of cars of the given car type in the given car rental company.
@@ -260,17 +978,35 @@ public class CarRentalModel {
 	 * 			name of the car rental company
      * @param 	carType
      * 			the given car type
-     * @return	A list of car IDs of cars with the given car type.
+     * @return	A list of car IDs of cars with the given car type. These are the dense 
+     * 			numbers of the cars within their company, see {@link CarRentalCompany#registerCars()}.
      */
     public Collection<Integer> getCarIdsByCarType(String crcName, CarType carType) 
     {
-        // TODO: find a way to safely cast Long to int without trespassing the bounds
-    	Collection<Integer> out = new ArrayList<>();
-    	for (Car c : getCarsByCarType(crcName, carType)) 
-    	{
-    		out.add(c.getId().hashCode());
-    	}
-    	return out;
+        try (LatencyHistogram.Timer timer = time("getCarIdsByCarType"))
+        {
+        	Collection<Integer> out = getCarNumbers(crcName, carType);
+        	if (out == null)
+        	{
+        	    // cars stored before they were numbered get their number once
+        	    repository.registerCars(crcName);
+        	    out = getCarNumbers(crcName, carType);
+        	}
+        	return out;
+        }
+    }
+    
+    // null if a car has no number yet
+    private Collection<Integer> getCarNumbers(String crcName, CarType carType)
+    {
+        Collection<Integer> out = new ArrayList<>();
+        for (Car c : getCarsByCarType(crcName, carType)) 
+        {
+            if (!c.hasNumber())
+                return null;
+            out.add(c.getNumber());
+        }
+        return out;
     }
     
     /**
@@ -283,7 +1019,121 @@ public class CarRentalModel {
      * @return	A number, representing the amount of cars of the given car type.
      */
     public int getAmountOfCarsByCarType(String crcName, CarType carType) {
-    	return this.getCarsByCarType(crcName, carType).size();
+        try (LatencyHistogram.Timer timer = time("getAmountOfCarsByCarType"))
+        {
+            Integer amount = getFleetSizes(crcName).get(carType.getName());
+            if(amount == null)
+                throw new IllegalArgumentException("Car type '" + carType.getName() + "' is not a car type of company '" + crcName + "'");
+        	return amount;
+        }
+    }
+    
+    /**
+     * Get the amount of cars of every car type in the given car rental company.
+     * 
+     * @param   crcName
+     *          name of the car rental company
+     * @return  The amount of cars per name of car type.
+     */
+    public Map<String, Integer> getFleetSizes(final String crcName)
+    {
+        try (LatencyHistogram.Timer timer = time("getFleetSizes"))
+        {
+            return new HashMap<>(CatalogCache.get().get(CatalogCache.fleetSizesKey(crcName), new CatalogCache.Loader<HashMap<String, Integer>>() {
+                @Override
+                public HashMap<String, Integer> load() {
+                    return loadFleetSizes(crcName);
+                }
+            }));
+        }
+    }
+    
+    private HashMap<String, Integer> loadFleetSizes(String company)
+    {
+        return repository.readCompany(company, new CompanyReader<HashMap<String, Integer>, RuntimeException>() {
+            @Override
+            public HashMap<String, Integer> read(CarRentalCompany crc) {
+                HashMap<String, Integer> out = new HashMap<>();
+                if(crc != null)
+                {
+                    for(CarType type : crc.getCarTypes())
+                        out.put(type.getName(), type.getCars().size());
+                }
+                return out;
+            }
+        });
+    }
+    
+    /**
+     * Get the car type with the given name of the given car rental company.
+     * 
+     * @param   crcName
+     *          name of the car rental company
+     * @param   carTypeName
+     *          name of the car type
+     * @return  The car type, without its cars.
+     */
+    public CarType getCarType(String crcName, String carTypeName)
+    {
+        try (LatencyHistogram.Timer timer = time("getCarType"))
+        {
+            for(CarType type : getCarTypesOfCarRentalCompany(crcName))
+            {
+                if(type.getName().equals(carTypeName))
+                    return type;
+            }
+            throw new IllegalArgumentException("Car type '" + carTypeName + "' is not a car type of company '" + crcName + "'");
+        }
+    }
+
+    /**
+     * Exercise the availability checks and the creation of quotes for every car type 
+     * of the given company with synthetic requests, so the code is compiled before real 
+     * requests arrive. Nothing is stored and no metrics are recorded. The availability 
+     * indexes that are built belong to the company that was read: the in-memory backend 
+     * keeps them, but through JPA they are dropped with its entity manager, and every 
+     * request builds them again.
+     * 
+     * @param   crcName
+     *          name of the car rental company
+     * @param   rounds
+     *          number of synthetic requests per car type
+     * @return  The number of synthetic quotes that were created.
+     */
+    public int warmUp(String crcName, final int rounds)
+    {
+        return repository.readCompany(crcName, new CompanyReader<Integer, RuntimeException>() {
+            @Override
+            public Integer read(CarRentalCompany crc) {
+                if(crc == null)
+                    return 0;
+                int quotes = 0;
+                Calendar calendar = Calendar.getInstance();
+                for(int round = 0; round < rounds; round++)
+                {
+                    // periods of 1 to 7 days, starting on one of the coming 365 days
+                    calendar.setTime(new Date());
+                    calendar.add(Calendar.DAY_OF_MONTH, 1 + round % 365);
+                    Date start = calendar.getTime();
+                    calendar.add(Calendar.DAY_OF_MONTH, 1 + round % 7);
+                    Date end = calendar.getTime();
+                    crc.getAvailableCarTypes(start, end);
+                    for(CarType type : crc.getCarTypes())
+                    {
+                        try
+                        {
+                            crc.createQuote(new ReservationConstraints(start, end, type.getName()), "warmup");
+                            quotes++;
+                        }
+                        catch(ReservationException e)
+                        {
+                            // the car type is fully booked in this period
+                        }
+                    }
+                }
+                return quotes;
+            }
+        });
     }
 
 	/**
@@ -295,26 +1145,17 @@ public class CarRentalModel {
 	 * 			the given car type
 	 * @return	List of cars of the given car type
 	 */
-	@SuppressWarnings("unchecked")
-    private List<Car> getCarsByCarType(String company, CarType carType) 
+    private List<Car> getCarsByCarType(final String company, final CarType carType) 
 	{				
-	    // TODO: find a better way to access car types -> cars
-		List<Car> out = new ArrayList<Car>(); 
-        Collection<CarType> types = getCarTypesOfCarRentalCompany(company);
-        for(CarType type : types)
-        {
-            if(type.getName().equals(carType.getName()))
-            {
-                Query query = getEntityManager().createQuery("SELECT carType.cars FROM CarType carType WHERE carType.id = :id");
-                query.setParameter("id", carType.getId());
-                List<Set<Car>> resultList = query.getResultList();
-                if(resultList.size() > 0)
-                    out.addAll(resultList.get(0));
-                return out;
+        return repository.readCompany(company, new CompanyReader<List<Car>, RuntimeException>() {
+            @Override
+            public List<Car> read(CarRentalCompany crc) {
+                if(crc == null)
+                    throw new IllegalArgumentException("CarRentalCompany '" + company + "' not found.");
+                // the company resolves the type by name and only its cars are loaded
+                return new ArrayList<Car>(crc.getCarType(carType.getName()).getCars());
             }
-                
-        }
-        throw new IllegalArgumentException("Car type '" + carType.getName() + "' is not a car type of company '" + company + "'");
+        });
 	}
 
 	/**
@@ -326,6 +1167,16 @@ public class CarRentalModel {
 	 * 			False otherwise.
 	 */
 	public boolean hasReservations(String renter) {
-		return this.getReservations(renter).size() > 0;		
+	    try (LatencyHistogram.Timer timer = time("hasReservations"))
+	    {
+		    long version = RenterIndex.get().version(renter);
+		    Boolean indexed = RenterIndex.get().hasReservations(renter, version);
+		    if(indexed != null)
+		        return indexed;
+	    
+		    boolean found = repository.hasReservations(renter);
+		    RenterIndex.get().put(renter, version, found);
+		    return found;
+	    }
 	}	
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package ds.gae;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by car rental company and car type.
+ * 
+ * Confirming a quote checks the availability of a car type and then books one of 
+ * its cars, which must not interleave with another confirmation for the same type. 
+ * Holding the stripes of the involved types serializes exactly those confirmations, 
+ * while confirmations for other types and companies run in parallel.
+ * 
+ * The stripes only serialize the confirmations of the current instance. In the 
+ * datastore, a confirmation is a transaction on the entity group of its company, 
+ * so confirmations for different car types of a company still conflict there, 
+ * on the same instance once the stripes let them through and across instances.
+ * 
+ * For every company and car type the number of contended acquisitions and of 
+ * detected conflicts is counted, which shows the hot car types.
+ */
+public class CarTypeLocks {
+
+    /**
+     * A set of held stripes, to be released with {@link #unlock()}.
+     */
+    public static class Lock {
+        private final ReentrantLock[] held;
+
+        private Lock(ReentrantLock[] held) {
+            this.held = held;
+        }
+
+        public void unlock() {
+            for (int i = held.length - 1; i >= 0; i--)
+                held[i].unlock();
+        }
+    }
+
+    private final ReentrantLock[] stripes;
+    private final ConcurrentMap<String, AtomicLong> contention = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> conflicts = new ConcurrentHashMap<>();
+
+    public CarTypeLocks(int nbOfStripes) {
+        stripes = new ReentrantLock[nbOfStripes];
+        for (int i = 0; i < nbOfStripes; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Lock the stripes of the given car types of the given company. Stripes are 
+     * always acquired in the same order, so concurrent callers cannot deadlock.
+     * They only exclude callers on the current instance, see the class comment.
+     */
+    public Lock lock(String company, Collection<String> carTypes) {
+        // car types can share a stripe, a contended stripe counts for all of them
+        SortedMap<Integer, List<String>> stripeKeys = new TreeMap<>();
+        for (String carType : carTypes) {
+            String key = key(company, carType);
+            List<String> keys = stripeKeys.get(stripeOf(key));
+            if (keys == null) {
+                keys = new ArrayList<>();
+                stripeKeys.put(stripeOf(key), keys);
+            }
+            keys.add(key);
+        }
+        ReentrantLock[] held = new ReentrantLock[stripeKeys.size()];
+        int i = 0;
+        for (Map.Entry<Integer, List<String>> entry : stripeKeys.entrySet()) {
+            ReentrantLock stripe = stripes[entry.getKey()];
+            if (!stripe.tryLock()) {
+                for (String key : entry.getValue())
+                    increment(contention, key);
+                stripe.lock();
+            }
+            held[i++] = stripe;
+        }
+        return new Lock(held);
+    }
+
+    /**
+     * Record that a confirmation for the given car types was rejected because of a 
+     * concurrent modification elsewhere, e.g. on another instance.
+     */
+    public void recordConflict(String company, Collection<String> carTypes) {
+        for (String carType : carTypes)
+            increment(conflicts, key(company, carType));
+    }
+
+    /**
+     * Get the number of contended lock acquisitions per "company/car type".
+     */
+    public Map<String, Long> getContention() {
+        return snapshot(contention);
+    }
+
+    /**
+     * Get the number of detected conflicts per "company/car type".
+     */
+    public Map<String, Long> getConflicts() {
+        return snapshot(conflicts);
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % stripes.length;
+    }
+
+    private static String key(String company, String carType) {
+        return company + "/" + carType;
+    }
+
+    private static void increment(ConcurrentMap<String, AtomicLong> counters, String key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null)
+                counter = created;
+        }
+        counter.incrementAndGet();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counters) {
+        Map<String, Long> out = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet())
+            out.put(entry.getKey(), entry.getValue().get());
+        return out;
+    }
+}
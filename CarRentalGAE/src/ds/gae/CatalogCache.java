@@ -0,0 +1,227 @@
+package ds.gae;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.jsr107cache.Cache;
+import net.sf.jsr107cache.CacheManager;
+
+import com.google.appengine.api.memcache.jsr107cache.GCacheFactory;
+
+/**
+ * Two-level read-through cache for the catalog of car rental companies and their
+ * car types, which almost never changes.
+ * 
+ * The first level is local to this instance, the second level is shared between 
+ * instances through JCache (memcache). Both levels expire their entries after a 
+ * configurable time to live, given in seconds by the system properties 
+ * <code>ds.gae.catalogCache.localTtl</code> and <code>ds.gae.catalogCache.sharedTtl</code>.
+ * Whoever changes the catalog must invalidate the affected entries.
+ * 
+ * Availability calendars are cached here as well. Their keys include the version of
+ * the reservations they were computed from, so only the version key is invalidated.
+ * Version keys are only kept in the shared level, see {@link #getShared(String, Loader)},
+ * so no instance serves a calendar of an old version from its local level.
+ */
+public class CatalogCache {
+
+    /**
+     * Computes a value that is missing in the cache.
+     */
+    public interface Loader<V extends Serializable> {
+        V load();
+    }
+
+    private static final Logger logger = Logger.getLogger(CatalogCache.class.getName());
+    private static final String NAMESPACE = "catalog";
+    private static final String COMPANY_NAMES = "companyNames";
+    private static final int MAX_LOCAL_ENTRIES = 1024;
+
+    private static final CatalogCache instance = new CatalogCache(
+            Integer.getInteger("ds.gae.catalogCache.localTtl", 60),
+            Integer.getInteger("ds.gae.catalogCache.sharedTtl", 3600));
+
+    public static CatalogCache get() {
+        return instance;
+    }
+
+    private final long localTtlNanos;
+    private final ConcurrentHashMap<String, LocalEntry> local = new ConcurrentHashMap<>();
+    // null when no shared cache is available, e.g. outside App Engine
+    private final Cache shared;
+
+    private CatalogCache(int localTtlSeconds, int sharedTtlSeconds) {
+        this.localTtlNanos = TimeUnit.SECONDS.toNanos(localTtlSeconds);
+        this.shared = createSharedCache(sharedTtlSeconds);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache createSharedCache(int ttlSeconds) {
+        try {
+            Map<Object, Object> properties = new HashMap<>();
+            properties.put(GCacheFactory.EXPIRATION_DELTA, ttlSeconds);
+            properties.put(GCacheFactory.NAMESPACE, NAMESPACE);
+            return CacheManager.getInstance().getCacheFactory().createCache(properties);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "No shared catalog cache available, caching locally only", e);
+            return null;
+        }
+    }
+
+    /********
+     * KEYS *
+     ********/
+
+    public static String companyNamesKey() {
+        return COMPANY_NAMES;
+    }
+
+    public static String carTypeNamesKey(String company) {
+        return "carTypeNames:" + company;
+    }
+
+    public static String carTypesKey(String company) {
+        return "carTypes:" + company;
+    }
+
+    public static String fleetSizesKey(String company) {
+        return "fleetSizes:" + company;
+    }
+
+    /**
+     * Key of the current version of the reservations of the given car type, see
+     * {@link AvailabilityCalendar}. Invalidating it invalidates all availability 
+     * calendars of the car type. Read it with {@link #getShared(String, Loader)}.
+     */
+    public static String availabilityVersionKey(String company, String carType) {
+        return "availabilityVersion:" + company + "/" + carType;
+    }
+
+    public static String availabilityKey(String company, String carType, long version, int fromDay, int nbOfDays) {
+        return "availability:" + company + "/" + carType + ":" + version + ":" + fromDay + "+" + nbOfDays;
+    }
+
+    /**
+     * Key of the marker that the fleets of the dummy companies are completely stored.
+     */
+    public static String fleetsLoadedKey() {
+        return "fleetsLoaded";
+    }
+
+    /**
+     * Invalidate everything that is cached about the given company, 
+     * including the list of company names.
+     */
+    public void invalidateCompany(String company) {
+        invalidate(companyNamesKey());
+        invalidate(carTypeNamesKey(company));
+        invalidate(carTypesKey(company));
+        invalidate(fleetSizesKey(company));
+    }
+
+    /**********
+     * ACCESS *
+     **********/
+
+    /**
+     * Get the value cached under the given key, loading it with the given loader 
+     * if neither cache level holds it.
+     */
+    @SuppressWarnings("unchecked")
+    public <V extends Serializable> V get(String key, Loader<V> loader) {
+        LocalEntry entry = local.get(key);
+        if (entry != null && !entry.isExpired())
+            return (V) entry.value;
+
+        V value = null;
+        if (shared != null) {
+            try {
+                value = (V) shared.get(key);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot read " + key + " from the shared catalog cache", e);
+            }
+        }
+        if (value == null) {
+            value = loader.load();
+            if (shared != null) {
+                try {
+                    shared.put(key, value);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Cannot write " + key + " to the shared catalog cache", e);
+                }
+            }
+        }
+        local.put(key, new LocalEntry(value, System.nanoTime() + localTtlNanos));
+        if (local.size() > MAX_LOCAL_ENTRIES)
+            purgeExpired();
+        return value;
+    }
+
+    /**
+     * Get the value cached under the given key in the shared level, loading it with the
+     * given loader if it is missing there. The local level is skipped, so an invalidation
+     * is seen at once by all instances. Without a shared cache, this is {@link #get}.
+     */
+    @SuppressWarnings("unchecked")
+    public <V extends Serializable> V getShared(String key, Loader<V> loader) {
+        if (shared == null)
+            return get(key, loader);
+        try {
+            V value = (V) shared.get(key);
+            if (value != null)
+                return value;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot read " + key + " from the shared catalog cache", e);
+            return loader.load();
+        }
+        V value = loader.load();
+        try {
+            shared.put(key, value);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot write " + key + " to the shared catalog cache", e);
+        }
+        return value;
+    }
+
+    /**
+     * Remove the given key from both cache levels.
+     */
+    public void invalidate(String key) {
+        local.remove(key);
+        if (shared != null) {
+            try {
+                shared.remove(key);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot invalidate " + key + " in the shared catalog cache", e);
+            }
+        }
+    }
+
+    // expired entries are otherwise only replaced when their key is requested again
+    private void purgeExpired() {
+        for (Iterator<LocalEntry> entries = local.values().iterator(); entries.hasNext(); ) {
+            if (entries.next().isExpired())
+                entries.remove();
+        }
+    }
+
+    private static class LocalEntry {
+        private final Object value;
+        private final long expiresAt;
+
+        LocalEntry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
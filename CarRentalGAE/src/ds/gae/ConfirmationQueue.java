@@ -0,0 +1,111 @@
+package ds.gae;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+
+/**
+ * Backend that runs confirmation tasks asynchronously.
+ * 
+ * The backend is chosen with the system property <code>ds.gae.confirmationQueue</code>:
+ * <code>taskqueue</code> (default) pushes the tasks to the App Engine default queue, 
+ * which delivers them to the {@link Worker} servlet; <code>executor</code> runs them 
+ * on an in-process thread pool, which allows running the pipeline without App Engine.
+ */
+public abstract class ConfirmationQueue {
+
+    public static final String BACKEND_PROPERTY = "ds.gae.confirmationQueue";
+
+    private static final Logger logger = Logger.getLogger(ConfirmationQueue.class.getName());
+    private static ConfirmationQueue instance;
+
+    public static synchronized ConfirmationQueue get() {
+        if (instance == null) {
+            String backend = System.getProperty(BACKEND_PROPERTY, "taskqueue");
+            if (backend.equals("executor"))
+                instance = new ExecutorBackend();
+            else if (backend.equals("taskqueue"))
+                instance = new TaskQueueBackend();
+            else
+                throw new IllegalStateException("Unknown confirmation queue backend '" + backend + "'");
+            logger.log(Level.INFO, "Using confirmation queue backend {0}", backend);
+        }
+        return instance;
+    }
+
+    /**
+     * Schedule the given task for asynchronous execution.
+     */
+    public abstract void enqueue(Task task);
+
+    /**
+     * Pushes tasks, serialized as payload, to the App Engine default queue.
+     */
+    static class TaskQueueBackend extends ConfirmationQueue {
+
+        static final String WORKER_URL = "/worker";
+
+        @Override
+        public void enqueue(Task task) {
+            QueueFactory.getDefaultQueue().add(TaskOptions.Builder
+                    .withUrl(WORKER_URL)
+                    .payload(serialize(task), "application/x-java-serialized-object"));
+        }
+
+        private static byte[] serialize(Task task) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(task);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot serialize task " + task.getConfirmationId(), e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Runs tasks on a local thread pool.
+     */
+    static class ExecutorBackend extends ConfirmationQueue {
+
+        private final ExecutorService executor = Executors.newFixedThreadPool(
+                Integer.getInteger("ds.gae.confirmationQueue.threads", 2), 
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "confirmation-worker");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        @Override
+        public void enqueue(final Task task) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        // there is no queue to retry the task, so undo what it booked and report the failure to the renter
+                        logger.log(Level.SEVERE, "Confirmation " + task.getConfirmationId() + " failed", e);
+                        try {
+                            CarRentalModel.get().failConfirmation(task.getConfirmationId(), task.getQuotes(),
+                                    "Confirmation failed, please try again.");
+                        } catch (RuntimeException ex) {
+                            logger.log(Level.SEVERE, "Cannot undo confirmation " + task.getConfirmationId(), ex);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
@@ -1,15 +1,68 @@
-package ds.gae;
-
-import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
-
-public final class EMF {
-    private static final EntityManagerFactory emfInstance =
-        Persistence.createEntityManagerFactory("transactions-optional");
-
-    private EMF() {}
-
-    public static EntityManagerFactory get() {
-        return emfInstance;
-    }
-}
\ No newline at end of file
+package ds.gae;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+public final class EMF {
+    private static final EntityManagerFactory emfInstance =
+        Persistence.createEntityManagerFactory("transactions-optional");
+
+    // entity manager scope of the request that is being handled by the current thread
+    private static final ThreadLocal<RequestScope> requestScope = new ThreadLocal<RequestScope>();
+
+    private EMF() {}
+
+    public static EntityManagerFactory get() {
+        return emfInstance;
+    }
+
+    /**
+     * Start a request scope on the current thread. All calls to {@link #current()} 
+     * until {@link #endRequest()} share one entity manager, which is only created 
+     * when it is first needed.
+     */
+    public static void beginRequest() {
+        requestScope.set(new RequestScope());
+    }
+
+    /**
+     * End the request scope of the current thread and close its entity manager.
+     */
+    public static void endRequest() {
+        RequestScope scope = requestScope.get();
+        requestScope.remove();
+        if (scope != null && scope.entityManager != null) {
+            EntityManager em = scope.entityManager;
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Get the entity manager of the request scope of the current thread.
+     * 
+     * @return the entity manager of the current request, or null outside a request scope
+     */
+    public static EntityManager current() {
+        RequestScope scope = requestScope.get();
+        if (scope == null)
+            return null;
+        if (scope.entityManager == null)
+            scope.entityManager = emfInstance.createEntityManager();
+        return scope.entityManager;
+    }
+
+    /**
+     * Check whether the given entity manager belongs to the request scope of the current thread.
+     */
+    public static boolean isCurrent(EntityManager em) {
+        RequestScope scope = requestScope.get();
+        return scope != null && scope.entityManager == em;
+    }
+
+    private static class RequestScope {
+        private EntityManager entityManager;
+    }
+}
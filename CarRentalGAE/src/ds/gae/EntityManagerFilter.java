@@ -0,0 +1,36 @@
+package ds.gae;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Gives every request its own entity manager, shared by all model calls made 
+ * while handling that request and closed when the request is done.
+ */
+public class EntityManagerFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig config) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+			throws IOException, ServletException {
+		EMF.beginRequest();
+		try {
+			chain.doFilter(req, resp);
+		} finally {
+			EMF.endRequest();
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+}
@@ -0,0 +1,180 @@
+package ds.gae;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import ds.gae.entities.EpochDays;
+import ds.gae.entities.Quote;
+
+/**
+ * The quotes a car renter has collected but not confirmed yet, kept in the HTTP session.
+ *
+ * App Engine writes the session to the datastore and memcache on every request that
+ * sets an attribute, so the cart is kept small: names of renters, companies and car
+ * types are stored once in a table of names, and every quote takes 38 bytes, i.e. three
+ * indexes in that table, a start and end epoch day, the price and the UUID of the hold 
+ * on its car. Dates have day precision, as they have in the datastore.
+ */
+public class QuoteCart implements Externalizable {
+
+    private static final long serialVersionUID = -3402785046613052129L;
+    private static final int FORMAT = 3;
+    // carts of format 1 have no hold ids, those of format 2 have hold ids that are no longer valid
+    private static final int FORMAT_WITHOUT_HOLDS = 1;
+    private static final int FORMAT_WITH_LOCAL_HOLDS = 2;
+    private static final int FIELDS = 5;
+    // names and quotes are counted in unsigned shorts
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    // renter, company and car type names, each stored once
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    // per quote: renter, company, car type (name indexes), start day, end day
+    private int[] fields = new int[4 * FIELDS];
+    private double[] prices = new double[4];
+    // null for quotes without a hold
+    private UUID[] holdIds = new UUID[4];
+    private int size;
+
+    public QuoteCart() {}
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(Quote quote) {
+        if (size == MAX_ENTRIES || names.size() > MAX_ENTRIES - 3)
+            throw new IllegalStateException("The quote cart is full");
+        if (size == prices.length) {
+            fields = Arrays.copyOf(fields, 2 * fields.length);
+            prices = Arrays.copyOf(prices, 2 * prices.length);
+            holdIds = Arrays.copyOf(holdIds, 2 * holdIds.length);
+        }
+        int offset = size * FIELDS;
+        fields[offset] = intern(quote.getCarRenter());
+        fields[offset + 1] = intern(quote.getRentalCompany());
+        fields[offset + 2] = intern(quote.getCarType());
+        fields[offset + 3] = quote.getStartDay();
+        fields[offset + 4] = quote.getEndDay();
+        prices[size] = quote.getRentalPrice();
+        holdIds[size] = quote.hasHold() ? UUID.fromString(quote.getHoldId()) : null;
+        size++;
+    }
+
+    /**
+     * Get all quotes in the cart, in the order they were added.
+     */
+    public List<Quote> getQuotes() {
+        List<Quote> quotes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            quotes.add(getQuote(i));
+        return quotes;
+    }
+
+    /**
+     * Get the quotes in the cart for the given car rental company.
+     */
+    public List<Quote> getQuotes(String company) {
+        List<Quote> quotes = new ArrayList<>();
+        Integer index = nameIndex.get(company);
+        if (index != null) {
+            for (int i = 0; i < size; i++) {
+                if (fields[i * FIELDS + 1] == index)
+                    quotes.add(getQuote(i));
+            }
+        }
+        return quotes;
+    }
+
+    private Quote getQuote(int i) {
+        int offset = i * FIELDS;
+        Quote quote = new Quote();
+        quote.setCarRenter(names.get(fields[offset]));
+        quote.setRentalCompany(names.get(fields[offset + 1]));
+        quote.setCarType(names.get(fields[offset + 2]));
+        quote.setStartDate(EpochDays.toDate(fields[offset + 3]));
+        quote.setEndDate(EpochDays.toDate(fields[offset + 4]));
+        quote.setRentalPrice(prices[i]);
+        quote.setHoldId(holdIds[i] != null ? holdIds[i].toString() : null);
+        return quote;
+    }
+
+    private int intern(String name) {
+        Integer index = nameIndex.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            nameIndex.put(name, index);
+        }
+        return index;
+    }
+
+    /*****************
+     * SERIALIZATION *
+     *****************/
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(FORMAT);
+        out.writeShort(names.size());
+        for (String name : names)
+            out.writeUTF(name);
+        out.writeShort(size);
+        for (int i = 0; i < size; i++) {
+            int offset = i * FIELDS;
+            out.writeShort(fields[offset]);
+            out.writeShort(fields[offset + 1]);
+            out.writeShort(fields[offset + 2]);
+            out.writeInt(fields[offset + 3]);
+            out.writeInt(fields[offset + 4]);
+            out.writeDouble(prices[i]);
+            // a random UUID is never all zeros
+            out.writeLong(holdIds[i] != null ? holdIds[i].getMostSignificantBits() : 0);
+            out.writeLong(holdIds[i] != null ? holdIds[i].getLeastSignificantBits() : 0);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int format = in.readByte();
+        if (format != FORMAT && format != FORMAT_WITH_LOCAL_HOLDS && format != FORMAT_WITHOUT_HOLDS)
+            throw new InvalidObjectException("Unknown quote cart format " + format);
+        int nbOfNames = in.readUnsignedShort();
+        for (int i = 0; i < nbOfNames; i++)
+            intern(in.readUTF());
+        int nbOfQuotes = in.readUnsignedShort();
+        fields = new int[Math.max(4, nbOfQuotes) * FIELDS];
+        prices = new double[Math.max(4, nbOfQuotes)];
+        holdIds = new UUID[Math.max(4, nbOfQuotes)];
+        for (int i = 0; i < nbOfQuotes; i++) {
+            int offset = i * FIELDS;
+            fields[offset] = in.readUnsignedShort();
+            fields[offset + 1] = in.readUnsignedShort();
+            fields[offset + 2] = in.readUnsignedShort();
+            fields[offset + 3] = in.readInt();
+            fields[offset + 4] = in.readInt();
+            prices[i] = in.readDouble();
+            if (format == FORMAT) {
+                long most = in.readLong();
+                long least = in.readLong();
+                holdIds[i] = (most != 0 || least != 0) ? new UUID(most, least) : null;
+            } else if (format == FORMAT_WITH_LOCAL_HOLDS) {
+                in.readLong();
+            }
+        }
+        size = nbOfQuotes;
+    }
+}
@@ -0,0 +1,348 @@
+package ds.gae;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.utils.SystemProperty;
+
+import ds.gae.entities.CarType;
+import ds.gae.entities.Quote;
+import ds.gae.metrics.Metrics;
+
+/**
+ * Tentative holds on the capacity of car types, placed when a quote is created so
+ * the car is still there when the quote is confirmed.
+ *
+ * A hold takes one car of a car type for the period of its quote, for
+ * <code>ds.gae.quoteHolds.ttl</code> seconds. A new hold only succeeds if, on every
+ * day of its period, the booked cars of the type and the held cars together are fewer
+ * than its cars, see {@link CarType#hasCapacity(int, int, int[])}. Confirming the
+ * quote turns its hold into the reservation; holds that are not confirmed expire.
+ *
+ * On App Engine, the holds of a car type are a single memcache entry that all
+ * instances share and update by compare-and-set, so a quote confirmed on any instance
+ * releases its hold. Hold ids are random UUIDs. Expired holds are dropped whenever
+ * the entry is updated, and the entry itself expires with its last hold. Elsewhere,
+ * holds are kept in the memory of the current process. Memcache may evict holds;
+ * confirmation still checks the availability of every quote, so a quote whose hold
+ * is gone is confirmed as if it had none.
+ */
+public class QuoteHolds {
+
+    private static final Logger logger = Logger.getLogger(QuoteHolds.class.getName());
+    private static final String NAMESPACE = "quoteHolds";
+    // compare-and-set attempts per update of the holds of a car type
+    private static final int MAX_ATTEMPTS = 10;
+
+    private static final QuoteHolds instance = new QuoteHolds(createStore(), Integer.getInteger("ds.gae.quoteHolds.ttl", 900));
+
+    private static final AtomicLong holdsPlaced = Metrics.get().counter("carrental_quote_holds_total");
+    private static final AtomicLong holdsRefused = Metrics.get().counter("carrental_quote_holds_refused_total");
+    private static final AtomicLong holdsExpired = Metrics.get().counter("carrental_quote_holds_expired_total");
+
+    public static QuoteHolds get() {
+        return instance;
+    }
+
+    private static Store createStore() {
+        if (SystemProperty.environment.value() != null)
+            return new MemcacheStore();
+        logger.log(Level.INFO, "Not running on App Engine, holding quotes locally only");
+        return new LocalStore();
+    }
+
+    static class Hold implements Serializable {
+        private static final long serialVersionUID = 5153741259146085203L;
+
+        private final int startDay;
+        private final int endDay;
+        private final long expires;
+
+        private Hold(int startDay, int endDay, long expires) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return expires <= now;
+        }
+
+        private boolean overlaps(int startDay, int endDay) {
+            return this.startDay < endDay && startDay < this.endDay;
+        }
+    }
+
+    /**
+     * The holds of a car type by id, as read from a store. The map is never changed;
+     * updates store a changed copy.
+     */
+    static class Entry {
+        private final HashMap<String, Hold> holds;
+        // what the store needs to check that the entry was not changed since it was read
+        private final Object version;
+
+        Entry(HashMap<String, Hold> holds, Object version) {
+            this.holds = (holds != null) ? holds : new HashMap<String, Hold>();
+            this.version = version;
+        }
+    }
+
+    /**
+     * Storage of the holds per "company/car type".
+     */
+    abstract static class Store {
+
+        abstract Entry get(String key);
+
+        /**
+         * Replace the given entry by the given holds, unless it was changed since it was read.
+         *
+         * @return  false if the entry was changed
+         */
+        abstract boolean replace(String key, Entry entry, HashMap<String, Hold> holds, long ttlMillis);
+    }
+
+    /**
+     * Keeps the holds in memcache, shared by all instances.
+     */
+    static class MemcacheStore extends Store {
+
+        private final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(NAMESPACE);
+
+        MemcacheStore() {
+            // failures must not look like missing or unchanged entries
+            memcache.setErrorHandler(ErrorHandlers.getStrict());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Entry get(String key) {
+            MemcacheService.IdentifiableValue value = memcache.getIdentifiable(key);
+            if (value == null)
+                return new Entry(null, null);
+            return new Entry((HashMap<String, Hold>) value.getValue(), value);
+        }
+
+        @Override
+        boolean replace(String key, Entry entry, HashMap<String, Hold> holds, long ttlMillis) {
+            // the entry lives as long as the holds placed now
+            Expiration expiration = Expiration.byDeltaMillis((int) Math.min(ttlMillis, Integer.MAX_VALUE));
+            if (entry.version == null)
+                return memcache.put(key, holds, expiration, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+            return memcache.putIfUntouched(key, (MemcacheService.IdentifiableValue) entry.version, holds, expiration);
+        }
+    }
+
+    /**
+     * Keeps the holds in the memory of the current process.
+     */
+    static class LocalStore extends Store {
+
+        private final ConcurrentHashMap<String, HashMap<String, Hold>> entries = new ConcurrentHashMap<>();
+
+        @Override
+        Entry get(String key) {
+            HashMap<String, Hold> holds = entries.get(key);
+            return new Entry(holds, holds);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean replace(String key, Entry entry, HashMap<String, Hold> holds, long ttlMillis) {
+            if (entry.version == null)
+                return entries.putIfAbsent(key, holds) == null;
+            return entries.replace(key, (HashMap<String, Hold>) entry.version, holds);
+        }
+    }
+
+    /**
+     * A change to the unexpired holds of a car type.
+     */
+    private interface Change {
+        /**
+         * @return  false if the given holds were left unchanged
+         */
+        boolean apply(HashMap<String, Hold> holds) throws ReservationException;
+    }
+
+    private final Store store;
+    private final long ttlMillis;
+
+    QuoteHolds(Store store, int ttlSeconds) {
+        this.store = store;
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    /**
+     * Hold a car of the given type, of the company of the given quote, for the period
+     * of the quote. The id of the hold is set on the quote. If the holds cannot be
+     * reached, the quote is left without a hold.
+     *
+     * @param   quote
+     *          a new quote, without a hold
+     * @param   type
+     *          the car type of the quote, with the current reservations of its cars
+     *
+     * @throws  ReservationException
+     *          On some day of the period, all cars of the type are booked or held.
+     */
+    public void hold(final Quote quote, final CarType type) throws ReservationException {
+        final int startDay = quote.getStartDay();
+        final int endDay = quote.getEndDay();
+        final String id = UUID.randomUUID().toString();
+        boolean placed;
+        try {
+            placed = update(key(quote), new Change() {
+                @Override
+                public boolean apply(HashMap<String, Hold> holds) throws ReservationException {
+                    int[] held = new int[endDay - startDay];
+                    boolean overlapped = false;
+                    for (Hold hold : holds.values()) {
+                        for (int day = Math.max(hold.startDay, startDay); day < Math.min(hold.endDay, endDay); day++) {
+                            held[day - startDay]++;
+                            overlapped = true;
+                        }
+                    }
+                    // without overlapping holds, the availability check of the quote suffices
+                    if (overlapped && !type.hasCapacity(startDay, endDay, held))
+                        throw new ReservationException("All free cars of type " + quote.getCarType()
+                                + " are held from " + quote.getStartDate() + " to " + quote.getEndDate());
+                    holds.put(id, new Hold(startDay, endDay, System.currentTimeMillis() + ttlMillis));
+                    return true;
+                }
+            });
+        } catch (ReservationException e) {
+            holdsRefused.incrementAndGet();
+            throw e;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot hold a car for " + quote, e);
+            return;
+        }
+        if (!placed) {
+            holdsRefused.incrementAndGet();
+            throw new ReservationException("Too many quotes for car type " + quote.getCarType() + " at once, please try again");
+        }
+        quote.setHoldId(id);
+        holdsPlaced.incrementAndGet();
+    }
+
+    /**
+     * Check whether the given quote has a hold that has not expired.
+     */
+    public boolean isHeld(Quote quote) {
+        if (!quote.hasHold())
+            return false;
+        Hold hold = read(quote).get(quote.getHoldId());
+        return hold != null && !hold.isExpired(System.currentTimeMillis())
+                && hold.startDay == quote.getStartDay() && hold.endDay == quote.getEndDay();
+    }
+
+    /**
+     * Check whether a hold that has not expired overlaps the period of the given quote
+     * for its car type, other than the hold of the quote itself.
+     */
+    public boolean isContended(Quote quote) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Hold> entry : read(quote).entrySet()) {
+            Hold hold = entry.getValue();
+            if (!hold.isExpired(now) && hold.overlaps(quote.getStartDay(), quote.getEndDay())
+                    && !entry.getKey().equals(quote.getHoldId()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Release the holds of the given quotes, e.g. because they were confirmed.
+     * Holds that cannot be released expire.
+     */
+    public void release(Collection<? extends Quote> quotes) {
+        Map<String, Set<String>> idsPerKey = new LinkedHashMap<>();
+        for (Quote quote : quotes) {
+            if (!quote.hasHold())
+                continue;
+            Set<String> ids = idsPerKey.get(key(quote));
+            if (ids == null) {
+                ids = new HashSet<>();
+                idsPerKey.put(key(quote), ids);
+            }
+            ids.add(quote.getHoldId());
+            quote.setHoldId(null);
+        }
+        for (Map.Entry<String, Set<String>> entry : idsPerKey.entrySet()) {
+            final Set<String> ids = entry.getValue();
+            try {
+                boolean released = update(entry.getKey(), new Change() {
+                    @Override
+                    public boolean apply(HashMap<String, Hold> holds) {
+                        return holds.keySet().removeAll(ids);
+                    }
+                });
+                if (!released)
+                    logger.log(Level.WARNING, "Cannot release holds {0} of {1}, they expire instead", new Object[]{ids, entry.getKey()});
+            } catch (ReservationException | RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot release holds " + ids + " of " + entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Get the holds of the car type of the given quote, or none if they cannot be read.
+     */
+    private Map<String, Hold> read(Quote quote) {
+        try {
+            return store.get(key(quote)).holds;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot read the holds of " + key(quote), e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Apply the given change to the unexpired holds stored under the given key, and
+     * store the result unless the holds were changed concurrently. Expired holds are dropped.
+     *
+     * @return  false if the holds kept changing concurrently
+     */
+    private boolean update(String key, Change change) throws ReservationException {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Entry entry = store.get(key);
+            long now = System.currentTimeMillis();
+            HashMap<String, Hold> holds = new HashMap<>(entry.holds);
+            int expired = 0;
+            for (Iterator<Hold> it = holds.values().iterator(); it.hasNext(); ) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                    expired++;
+                }
+            }
+            if (!change.apply(holds) && expired == 0)
+                return true;
+            if (store.replace(key, entry, holds, ttlMillis)) {
+                holdsExpired.addAndGet(expired);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(Quote quote) {
+        return quote.getRentalCompany() + "/" + quote.getCarType();
+    }
+}
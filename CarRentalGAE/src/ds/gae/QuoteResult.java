@@ -0,0 +1,51 @@
+package ds.gae;
+
+import ds.gae.entities.Quote;
+import ds.gae.entities.ReservationConstraints;
+
+/**
+ * Outcome of quoting one set of reservation constraints in a batch: either a
+ * quote, or the reason why no quote could be made.
+ */
+public class QuoteResult {
+
+    private final ReservationConstraints constraints;
+    private final Quote quote;
+    private final String failure;
+
+    private QuoteResult(ReservationConstraints constraints, Quote quote, String failure) {
+        this.constraints = constraints;
+        this.quote = quote;
+        this.failure = failure;
+    }
+
+    static QuoteResult quoted(ReservationConstraints constraints, Quote quote) {
+        return new QuoteResult(constraints, quote, null);
+    }
+
+    static QuoteResult failed(ReservationConstraints constraints, String failure) {
+        return new QuoteResult(constraints, null, failure);
+    }
+
+    public ReservationConstraints getConstraints() {
+        return constraints;
+    }
+
+    public boolean isQuoted() {
+        return quote != null;
+    }
+
+    /**
+     * @return  the quote, or null if no quote could be made
+     */
+    public Quote getQuote() {
+        return quote;
+    }
+
+    /**
+     * @return  the reason why no quote could be made, or null if a quote was made
+     */
+    public String getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,40 @@
+package ds.gae;
+
+import java.util.Collections;
+import java.util.List;
+
+import ds.gae.entities.Quote;
+
+/**
+ * Outcome of a search for the cheapest quotes across car rental companies.
+ * Companies that did not answer within the latency budget, or failed, are
+ * listed as missing; the quotes are those of the other companies.
+ */
+public class QuoteSearchResult {
+
+    private final List<Quote> quotes;
+    private final List<String> missingCompanies;
+
+    QuoteSearchResult(List<Quote> quotes, List<String> missingCompanies) {
+        this.quotes = Collections.unmodifiableList(quotes);
+        this.missingCompanies = Collections.unmodifiableList(missingCompanies);
+    }
+
+    /**
+     * Get the quotes found, cheapest first.
+     */
+    public List<Quote> getQuotes() {
+        return quotes;
+    }
+
+    public List<String> getMissingCompanies() {
+        return missingCompanies;
+    }
+
+    /**
+     * Check whether every company was searched.
+     */
+    public boolean isComplete() {
+        return missingCompanies.isEmpty();
+    }
+}
@@ -0,0 +1,200 @@
+package ds.gae;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.jsr107cache.Cache;
+import net.sf.jsr107cache.CacheManager;
+
+import com.google.appengine.api.memcache.jsr107cache.GCacheFactory;
+
+import ds.gae.entities.Reservation;
+
+/**
+ * Index of whether every car renter has reservations, so that is known without 
+ * querying the datastore.
+ * 
+ * The index is kept in the shared cache (memcache), so all instances see the 
+ * updates made on confirmation and cancellation; outside App Engine a local map 
+ * of at most about {@value #MAX_LOCAL_ENTRIES} entries is used instead. A renter that 
+ * is not indexed yet is indexed on first use. Entries expire after 
+ * <code>ds.gae.renterIndex.ttl</code> seconds, but renters without reservations after
+ * <code>ds.gae.renterIndex.negativeTtl</code> seconds: the query that finds none is 
+ * eventually consistent and can miss a reservation that was just confirmed.
+ * 
+ * The cache cannot compare and set, so entries are never updated in place. Like 
+ * the availability calendars, every entry is stored under the version of the
+ * reservations of its renter that was current before the datastore was read, and
+ * confirming or cancelling reservations only removes the version. An entry that 
+ * raced with a change is thus stored under an old version and never read.
+ */
+public class RenterIndex {
+
+    private static final Logger logger = Logger.getLogger(RenterIndex.class.getName());
+    private static final String NAMESPACE = "renters";
+    private static final int MAX_LOCAL_ENTRIES = 4096;
+
+    private static final RenterIndex instance = new RenterIndex(
+            Integer.getInteger("ds.gae.renterIndex.ttl", 24 * 3600),
+            Integer.getInteger("ds.gae.renterIndex.negativeTtl", 60));
+
+    public static RenterIndex get() {
+        return instance;
+    }
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    // null when no shared cache is available, e.g. outside App Engine. Both caches 
+    // store into the same namespace, they only differ in the expiration of their puts
+    private final Cache shared;
+    private final Cache sharedNegative;
+    private final ConcurrentHashMap<String, LocalEntry> local = new ConcurrentHashMap<>();
+
+    private RenterIndex(int ttlSeconds, int negativeTtlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        Cache cache = createSharedCache(ttlSeconds);
+        this.sharedNegative = (cache != null) ? createSharedCache(negativeTtlSeconds) : null;
+        this.shared = (sharedNegative != null) ? cache : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache createSharedCache(int ttlSeconds) {
+        try {
+            Map<Object, Object> properties = new HashMap<>();
+            properties.put(GCacheFactory.EXPIRATION_DELTA, ttlSeconds);
+            properties.put(GCacheFactory.NAMESPACE, NAMESPACE);
+            return CacheManager.getInstance().getCacheFactory().createCache(properties);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "No shared cache available, indexing renters locally only", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the current version of the reservations of the given renter, starting a 
+     * new version if there is none. Get the version before reading the reservations
+     * that are indexed under it.
+     */
+    public long version(String renter) {
+        try {
+            Long version = (Long) read(versionKey(renter));
+            if (version == null) {
+                // random, so instances that start a version at the same time do not pick the same
+                version = ThreadLocalRandom.current().nextLong();
+                write(versionKey(renter), version, false);
+            }
+            return version;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot read renter index of " + renter, e);
+            // a fresh version, under which nothing is indexed
+            return ThreadLocalRandom.current().nextLong();
+        }
+    }
+
+    /**
+     * Check whether the given renter has reservations, according to the index.
+     * 
+     * @return the indexed answer, or null if the renter is not indexed under the given version
+     */
+    public Boolean hasReservations(String renter, long version) {
+        try {
+            return (Boolean) read(entryKey(renter, version));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot read renter index of " + renter, e);
+            return null;
+        }
+    }
+
+    /**
+     * Index whether the given renter has reservations, as read from the datastore
+     * after getting the given version.
+     */
+    public void put(String renter, long version, boolean hasReservations) {
+        try {
+            write(entryKey(renter, version), hasReservations, !hasReservations);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot update renter index of " + renter, e);
+        }
+    }
+
+    /**
+     * Start new versions for the renters of the given (committed) reservations,
+     * which were confirmed or cancelled.
+     */
+    public void changed(Collection<Reservation> reservations) {
+        Set<String> renters = new HashSet<>();
+        for (Reservation reservation : reservations)
+            renters.add(reservation.getCarRenter());
+        for (String renter : renters) {
+            try {
+                if (shared != null)
+                    shared.remove(versionKey(renter));
+                else
+                    local.remove(versionKey(renter));
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot update renter index of " + renter, e);
+            }
+        }
+    }
+
+    private Object read(String key) {
+        if (shared != null)
+            return shared.get(key);
+        LocalEntry entry = local.get(key);
+        return (entry != null && !entry.isExpired()) ? entry.value : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(String key, Object value, boolean negative) {
+        if (shared != null) {
+            (negative ? sharedNegative : shared).put(key, value);
+            return;
+        }
+        local.put(key, new LocalEntry(value, System.nanoTime() + (negative ? negativeTtlNanos : ttlNanos)));
+        if (local.size() > MAX_LOCAL_ENTRIES)
+            purge();
+    }
+
+    // entries under old versions are never read again, so only expiry removes them
+    private void purge() {
+        for (Iterator<LocalEntry> entries = local.values().iterator(); entries.hasNext(); ) {
+            if (entries.next().isExpired())
+                entries.remove();
+        }
+        // the index can always be rebuilt from the datastore
+        if (local.size() > MAX_LOCAL_ENTRIES)
+            local.clear();
+    }
+
+    private static String versionKey(String renter) {
+        return "version:" + renter;
+    }
+
+    private static String entryKey(String renter, long version) {
+        return "hasReservations:" + renter + ":" + version;
+    }
+
+    private static class LocalEntry {
+        private final Object value;
+        private final long expiresAt;
+
+        LocalEntry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ds.gae;
+
+import java.util.concurrent.ThreadFactory;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.utils.SystemProperty;
+
+/**
+ * Threads for parallel work within a request.
+ *
+ * On App Engine, threads must be created through the thread manager and end with
+ * the request that created them. Elsewhere, daemon threads with the given name are used.
+ */
+public final class RequestThreads {
+
+    private RequestThreads() {}
+
+    public static ThreadFactory factory(final String name) {
+        if (SystemProperty.environment.value() != null)
+            return ThreadManager.currentRequestThreadFactory();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
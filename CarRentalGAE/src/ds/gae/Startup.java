@@ -0,0 +1,106 @@
+package ds.gae;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ds.gae.listener.FleetLoader;
+import ds.gae.metrics.Metrics;
+
+/**
+ * Prepares an instance for traffic:
+ * <ol>
+ * <li>stores the dummy fleets, unless the shared catalog cache says they are complete,</li>
+ * <li>loads the catalog of companies and car types into the catalog cache,</li>
+ * <li>runs <code>ds.gae.warmup.rounds</code> synthetic quote requests per car type, which
+ *     gets the hot paths compiled. Only the in-memory backend keeps the availability
+ *     indexes they build; through JPA, they are dropped with the entities that were read.</li>
+ * </ol>
+ * Preparing is done once per instance, however often {@link #ensureReady()} is called.
+ * The time from the start of the instance until it is ready is exported as the gauge
+ * <code>carrental_time_to_ready_seconds</code>.
+ */
+public class Startup {
+
+    private static final Logger logger = Logger.getLogger(Startup.class.getName());
+
+    private static final Startup instance = new Startup();
+
+    public static Startup get() {
+        return instance;
+    }
+
+    private final long startedAt = System.nanoTime();
+    private volatile boolean ready;
+
+    private Startup() {}
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Prepare this instance, unless it is prepared already. Concurrent callers wait
+     * until the instance is ready.
+     */
+    public synchronized void ensureReady() {
+        if (ready)
+            return;
+        long start = System.nanoTime();
+        seed();
+        int quotes = warmUp();
+        ready = true;
+
+        double timeToReady = (System.nanoTime() - startedAt) / 1e9;
+        Metrics.get().gauge("carrental_time_to_ready_seconds").set(timeToReady);
+        logger.log(Level.INFO, "Ready after {0} s, preparing took {1} ms with {2} synthetic quotes",
+                new Object[]{timeToReady, (System.nanoTime() - start) / 1000000, quotes});
+    }
+
+    /**
+     * Prepare this instance on a background thread, so the current request does not wait for it.
+     */
+    public void ensureReadyInBackground() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ensureReady();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Preparing the instance failed", e);
+                }
+            }
+        }, "startup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void seed() {
+        CatalogCache.get().get(CatalogCache.fleetsLoadedKey(), new CatalogCache.Loader<Boolean>() {
+            @Override
+            public Boolean load() {
+                Map<String, String> fleets = new LinkedHashMap<>();
+                fleets.put("Hertz", "hertz.csv");
+                fleets.put("Dockx", "dockx.csv");
+                // only adds what is missing, e.g. after an interrupted load
+                if (!FleetLoader.fromSystemProperties().load(fleets))
+                    throw new IllegalStateException("Loading the fleets failed");
+                return Boolean.TRUE;
+            }
+        });
+    }
+
+    private int warmUp() {
+        CarRentalModel model = CarRentalModel.get();
+        int rounds = Integer.getInteger("ds.gae.warmup.rounds", 50);
+        int quotes = 0;
+        for (String company : model.getAllRentalCompanyNames()) {
+            model.getCarTypesNames(company);
+            model.getCarTypesOfCarRentalCompany(company);
+            model.getFleetSizes(company);
+            quotes += model.warmUp(company, rounds);
+        }
+        return quotes;
+    }
+}
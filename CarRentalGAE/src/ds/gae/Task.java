@@ -1,10 +1,67 @@
-package ds.gae;
-
-public class Task implements Runnable {
-
-	@Override
-	public void run() {
-		
-	}
-
-}
+package ds.gae;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.Quote;
+
+/**
+ * Confirms the quotes of a car renter in the background and records the 
+ * outcome as a {@link Confirmation}.
+ */
+public class Task implements Runnable, Serializable {
+
+	private static final long serialVersionUID = 2390163612367291519L;
+	private static final Logger logger = Logger.getLogger(Task.class.getName());
+
+	private final String confirmationId;
+	private final ArrayList<Quote> quotes;
+
+	public Task(String confirmationId, List<Quote> quotes) {
+		this.confirmationId = confirmationId;
+		this.quotes = new ArrayList<Quote>(quotes);
+	}
+
+	public String getConfirmationId() {
+		return confirmationId;
+	}
+
+	List<Quote> getQuotes() {
+		return quotes;
+	}
+
+	@Override
+	public void run() {
+		run(CarRentalModel.get());
+	}
+
+	void run(CarRentalModel model) {
+		// a task can be delivered more than once, only the delivery that claims it books the quotes
+		Confirmation confirmation = model.claimConfirmation(confirmationId);
+		if (confirmation == null) {
+			Confirmation current = model.getConfirmation(confirmationId);
+			if (current != null && !current.isDone())
+				// fail, so the queue delivers the task again once the claim of the other delivery has expired
+				throw new IllegalStateException("Confirmation " + confirmationId + " is claimed by another delivery");
+			logger.log(Level.INFO, "Skipping confirmation {0}, already handled", confirmationId);
+			return;
+		}
+		try {
+			model.confirmQuotes(confirmation, quotes);
+		} catch (ReservationException e) {
+			model.updateConfirmation(confirmationId, Confirmation.Status.FAILED, e.getMessage());
+			return;
+		} catch (RuntimeException e) {
+			// the companies that were booked have been undone, or keep reservations of the confirmation
+			// which the next delivery of this task takes as booked, so the confirmation can be handed back
+			model.updateConfirmation(confirmationId, Confirmation.Status.PENDING, null);
+			throw e;
+		}
+		model.updateConfirmation(confirmationId, Confirmation.Status.CONFIRMED, null);
+	}
+
+}
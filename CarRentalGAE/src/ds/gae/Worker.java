@@ -1,22 +1,62 @@
-package ds.gae;
-
-import java.io.IOException;
-
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-import com.google.appengine.api.taskqueue.Queue;
-import com.google.appengine.api.taskqueue.QueueFactory;
-
-public class Worker extends HttpServlet {
-	private static final long serialVersionUID = -7058685883212377590L;
-	
-	@Override
-	protected void doPost(HttpServletRequest req, HttpServletResponse resp)
-			throws ServletException, IOException {
-		super.doPost(req, resp);
-		Queue queue = QueueFactory.getDefaultQueue();
-	}
-}
+package ds.gae;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import ds.gae.entities.EpochDays;
+
+/**
+ * Runs the tasks that are pushed to the task queue by 
+ * {@link ConfirmationQueue.TaskQueueBackend}, and the scheduled jobs of cron.xml.
+ *
+ * Scheduled jobs are requested with GET and an action parameter:
+ * <ul>
+ * <li><code>archive</code> moves the reservations that ended more than
+ *     <code>ds.gae.archive.horizonDays</code> days ago to the archive, in batches of
+ *     <code>ds.gae.archive.batchSize</code> reservations.</li>
+ * </ul>
+ */
+public class Worker extends HttpServlet {
+	private static final long serialVersionUID = -7058685883212377590L;
+	private static final Logger logger = Logger.getLogger(Worker.class.getName());
+	
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		Task task;
+		try (ObjectInputStream in = new ObjectInputStream(req.getInputStream())) {
+			task = (Task) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			// a malformed payload will never succeed, so do not let the queue retry it
+			logger.log(Level.SEVERE, "Dropping malformed task", e);
+			resp.setStatus(HttpServletResponse.SC_OK);
+			return;
+		}
+		// failures other than a rejected reservation propagate, so the queue retries the task
+		task.run();
+		resp.setStatus(HttpServletResponse.SC_OK);
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		String action = req.getParameter("action");
+		if ("archive".equals(action)) {
+			int horizonDay = EpochDays.of(new Date()) - Integer.getInteger("ds.gae.archive.horizonDays", 30);
+			int archived = CarRentalModel.get().archiveReservations(horizonDay,
+					Integer.getInteger("ds.gae.archive.batchSize", 200));
+			resp.setContentType("text/plain");
+			resp.getWriter().println("Archived " + archived + " reservations");
+		} else {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown action " + action);
+		}
+	}
+}
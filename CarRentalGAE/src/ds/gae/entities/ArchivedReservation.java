@@ -0,0 +1,92 @@
+package ds.gae.entities;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+/**
+ * A reservation that ended before the archiving horizon, moved out of the
+ * reservations of its car so it no longer weighs on availability checks.
+ *
+ * Archived reservations are root entities, kept apart from the entity group of
+ * their company. Their id is derived from the id of the original reservation,
+ * so archiving the same reservation twice stores it only once.
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = ArchivedReservation.BY_RENTER,
+            query = "SELECT archived FROM ArchivedReservation archived WHERE archived.carRenter = :renter"),
+    @NamedQuery(name = ArchivedReservation.IDS_BY_RENTER,
+            query = "SELECT archived.id FROM ArchivedReservation archived WHERE archived.carRenter = :renter")
+})
+public class ArchivedReservation extends Quote {
+
+    public static final String BY_RENTER = "ArchivedReservation.byRenter";
+    public static final String IDS_BY_RENTER = "ArchivedReservation.idsByRenter";
+
+    @Id
+    private String id;
+    private Key reservationId;
+    private Key carId;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date archived;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ArchivedReservation(Reservation reservation) {
+        super(reservation.getCarRenter(), reservation.getStartDate(), reservation.getEndDate(),
+                reservation.getRentalCompany(), reservation.getCarType(), reservation.getRentalPrice());
+        this.id = KeyFactory.keyToString(reservation.getId());
+        this.reservationId = reservation.getId();
+        this.carId = reservation.getCarId();
+        this.archived = new Date();
+    }
+
+    public ArchivedReservation() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public Key getReservationId() {
+        return reservationId;
+    }
+
+    public Key getCarId() {
+        return carId;
+    }
+
+    public Date getArchived() {
+        return archived;
+    }
+
+    /**
+     * Get the original reservation, for showing it next to the live reservations.
+     * The result is not managed and must not be persisted.
+     */
+    public Reservation toReservation() {
+        Reservation reservation = new Reservation(this, carId);
+        reservation.setId(reservationId);
+        return reservation;
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("Archived reservation for %s from %s to %s at %s\nCar type: %s\tCar: %s\nTotal price: %.2f",
+                getCarRenter(), getStartDate(), getEndDate(), getRentalCompany(), getCarType(), getCarId(), getRentalPrice());
+    }
+}
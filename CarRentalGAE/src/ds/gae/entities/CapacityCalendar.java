@@ -0,0 +1,104 @@
+package ds.gae.entities;
+
+/**
+ * Day-bucketed calendar that counts, for every epoch day, how many cars of a
+ * car type are booked on that day.
+ *
+ * The counts are kept in a segment tree with lazy propagation, so booking a
+ * period and asking for the busiest day in a period both cost O(log days).
+ * Pending additions stay at the node where they were added and are summed while
+ * descending, so queries never write: concurrent queries are safe, as long as
+ * no booking is added at the same time.
+ * The covered window of days grows on demand; days outside the window have
+ * no bookings. Periods are half-open ranges of epoch days, see {@link EpochDays}.
+ */
+public class CapacityCalendar {
+
+    private static final int MIN_LENGTH = 64;
+
+    // first epoch day covered by the tree
+    private int origin;
+    // number of covered days, always a power of two (or 0 while empty)
+    private int length;
+    private int[] max = new int[0];
+    private int[] lazy = new int[0];
+
+    /**
+     * Add delta to the booked count of every day in [fromDay, toDay).
+     */
+    public void add(int fromDay, int toDay, int delta) {
+        if (fromDay >= toDay)
+            throw new IllegalArgumentException("Illegal given period");
+        int lastDay = toDay - 1;
+        ensureCovered(fromDay, lastDay);
+        add(1, 0, length - 1, fromDay - origin, lastDay - origin, delta);
+    }
+
+    /**
+     * Get the highest booked count of any day in [fromDay, toDay).
+     */
+    public int max(int fromDay, int toDay) {
+        if (fromDay >= toDay)
+            throw new IllegalArgumentException("Illegal given period");
+        int lastDay = toDay - 1;
+        int from = Math.max(fromDay, origin) - origin;
+        int to = Math.min(lastDay, origin + length - 1) - origin;
+        if (length == 0 || from > to)
+            return 0;
+        return max(1, 0, length - 1, from, to);
+    }
+
+    /****************
+     * SEGMENT TREE *
+     ****************/
+
+    // max[node] is the busiest day below node, counting lazy[node] but not the lazy values of its ancestors
+    private void add(int node, int low, int high, int from, int to, int delta) {
+        if (to < low || high < from)
+            return;
+        if (from <= low && high <= to) {
+            max[node] += delta;
+            lazy[node] += delta;
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        add(2 * node, low, mid, from, to, delta);
+        add(2 * node + 1, mid + 1, high, from, to, delta);
+        max[node] = lazy[node] + Math.max(max[2 * node], max[2 * node + 1]);
+    }
+
+    private int max(int node, int low, int high, int from, int to) {
+        if (from <= low && high <= to)
+            return max[node];
+        int mid = (low + high) >>> 1;
+        int result = Integer.MIN_VALUE;
+        if (from <= mid)
+            result = Math.max(result, max(2 * node, low, mid, from, to));
+        if (to > mid)
+            result = Math.max(result, max(2 * node + 1, mid + 1, high, from, to));
+        return lazy[node] + result;
+    }
+
+    private void ensureCovered(int fromDay, int toDay) {
+        if (length > 0 && fromDay >= origin && toDay < origin + length)
+            return;
+        int newOrigin = length == 0 ? fromDay : Math.min(origin, fromDay);
+        int newEnd = length == 0 ? toDay : Math.max(origin + length - 1, toDay);
+        int newLength = Math.max(MIN_LENGTH, Integer.highestOneBit(newEnd - newOrigin) << 1);
+
+        int[] counts = new int[length];
+        for (int day = 0; day < length; day++)
+            counts[day] = max(1, 0, length - 1, day, day);
+        int oldOrigin = origin;
+        int oldLength = length;
+
+        origin = newOrigin;
+        length = newLength;
+        max = new int[2 * newLength];
+        lazy = new int[2 * newLength];
+        for (int day = 0; day < oldLength; day++) {
+            if (counts[day] != 0)
+                add(1, 0, length - 1, oldOrigin + day - origin, oldOrigin + day - origin, counts[day]);
+        }
+    }
+}
@@ -10,6 +10,8 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.PostLoad;
+import javax.persistence.Transient;
 
 import com.google.appengine.api.datastore.Key;
 
@@ -19,8 +21,13 @@ public class Car {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Key id;
+    // dense number of the car within its company, null until the company registers the car
+    private Integer number;
     @OneToMany(cascade = CascadeType.ALL)
     private Set<Reservation> reservations = new HashSet<Reservation>();
+    // derived from reservations, rebuilt lazily after the car is loaded
+    @Transient
+    private volatile ReservationIndex reservationIndex;
 
     /***************
      * CONSTRUCTOR *
@@ -40,6 +47,30 @@ public class Car {
     {
         this.id = id;
     }
+    
+    /**
+     * Check whether this car has been given a number by its company.
+     */
+    public boolean hasNumber() {
+        return number != null;
+    }
+    
+    /**
+     * Get the number of this car within its company, see {@link CarRentalCompany#registerCars()}.
+     * 
+     * @throws  IllegalStateException
+     *          This car has no number yet.
+     */
+    public int getNumber() {
+        if(number == null)
+            throw new IllegalStateException("Car " + id + " has no number yet");
+        return number;
+    }
+    
+    void setNumber(int number)
+    {
+        this.number = number;
+    }
 
     /****************
      * RESERVATIONS *
@@ -52,26 +83,68 @@ public class Car {
     public void setReservations(Set<Reservation> reservations)
     {
         this.reservations = reservations;
+        this.reservationIndex = null;
     }
 
     public boolean isAvailable(Date start, Date end) {
-        if(!start.before(end))
+        return isAvailable(EpochDays.of(start), EpochDays.of(end));
+    }
+    
+    /**
+     * Check whether this car is free during the period [startDay, endDay) of epoch days.
+     */
+    public boolean isAvailable(int startDay, int endDay) {
+        if(startDay >= endDay)
             throw new IllegalArgumentException("Illegal given period");
 
-        for(Reservation reservation : reservations) {
-            if(reservation.getEndDate().before(start) || reservation.getStartDate().after(end))
-                continue;
+        return !getReservationIndex().overlaps(startDay, endDay);
+    }
+
+    /**
+     * Get the first day of the free gap of this car around the free period [startDay, endDay),
+     * or Integer.MIN_VALUE if this car has no reservations before it.
+     */
+    public int getGapStart(int startDay, int endDay) {
+        return getReservationIndex().gapStart(startDay, endDay);
+    }
+
+    /**
+     * Get the end day (exclusive) of the free gap of this car around the free period
+     * [startDay, endDay), or Integer.MAX_VALUE if this car has no reservations after it.
+     */
+    public int getGapEnd(int startDay, int endDay) {
+        return getReservationIndex().gapEnd(startDay, endDay);
+    }
+    
+    public boolean addReservation(Reservation res) {
+        ReservationIndex index = getReservationIndex();
+        if(!reservations.add(res))
             return false;
-        }
+        index.add(res);
         return true;
     }
     
-    public void addReservation(Reservation res) {
-        reservations.add(res);
+    public boolean removeReservation(Reservation reservation) {
+        // equals-method for Reservation is required!
+        ReservationIndex index = getReservationIndex();
+        if(!reservations.remove(reservation))
+            return false;
+        index.remove(reservation);
+        return true;
     }
     
-    public void removeReservation(Reservation reservation) {
-        // equals-method for Reservation is required!
-        reservations.remove(reservation);
+    private ReservationIndex getReservationIndex() {
+        // built completely before it is published, so parallel readers never see a partial index
+        ReservationIndex current = reservationIndex;
+        if(current == null) {
+            current = new ReservationIndex(reservations);
+            reservationIndex = current;
+        }
+        return current;
+    }
+    
+    @PostLoad
+    private void resetReservationIndex() {
+        reservationIndex = null;
     }
 }
\ No newline at end of file
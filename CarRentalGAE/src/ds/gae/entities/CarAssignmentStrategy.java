@@ -0,0 +1,146 @@
+package ds.gae.entities;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Chooses the car of a car type that gets a new reservation.
+ *
+ * The choice decides how the calendars of the cars fragment over a season: short
+ * reservations scattered over all cars leave gaps that are too short for long
+ * reservations, which then fail although the car type has enough free car days.
+ *
+ * The default strategy is chosen with the system property <code>ds.gae.carAssignment</code>:
+ * <code>bestFit</code> (default) takes the car with the tightest free gap around the
+ * period; <code>firstFit</code> takes the free car with the lowest car number;
+ * <code>random</code> takes any free car.
+ */
+public abstract class CarAssignmentStrategy {
+
+    public static final String STRATEGY_PROPERTY = "ds.gae.carAssignment";
+
+    public static final CarAssignmentStrategy RANDOM = new RandomStrategy();
+    public static final CarAssignmentStrategy FIRST_FIT = new FirstFitStrategy();
+    public static final CarAssignmentStrategy BEST_FIT = new BestFitStrategy();
+
+    private static final Logger logger = Logger.getLogger(CarAssignmentStrategy.class.getName());
+    private static CarAssignmentStrategy instance;
+
+    public static synchronized CarAssignmentStrategy get() {
+        if (instance == null) {
+            String name = System.getProperty(STRATEGY_PROPERTY, "bestFit");
+            instance = forName(name);
+            logger.log(Level.INFO, "Using car assignment strategy {0}", name);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the strategy with the given name: random, firstFit or bestFit.
+     *
+     * @throws  IllegalArgumentException
+     *          There is no strategy with the given name.
+     */
+    public static CarAssignmentStrategy forName(String name) {
+        if (name.equals("random"))
+            return RANDOM;
+        else if (name.equals("firstFit"))
+            return FIRST_FIT;
+        else if (name.equals("bestFit"))
+            return BEST_FIT;
+        else
+            throw new IllegalArgumentException("Unknown car assignment strategy '" + name + "'");
+    }
+
+    /**
+     * Choose a car of the given type that is free during [startDay, endDay).
+     *
+     * @return  The chosen car, or null if no car of the given type is free.
+     */
+    public abstract Car assign(CarType type, int startDay, int endDay);
+
+    // cars stored without a number come last
+    private static int numberOf(Car car) {
+        return car.hasNumber() ? car.getNumber() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Takes every free car with the same probability.
+     */
+    static class RandomStrategy extends CarAssignmentStrategy {
+
+        @Override
+        public Car assign(CarType type, int startDay, int endDay) {
+            // reservoir sampling, so the free cars need not be collected
+            Car chosen = null;
+            int nbOfFreeCars = 0;
+            for (Car car : type.getCars()) {
+                if (car.isAvailable(startDay, endDay)
+                        && ThreadLocalRandom.current().nextInt(++nbOfFreeCars) == 0)
+                    chosen = car;
+            }
+            return chosen;
+        }
+
+        @Override
+        public String toString() {
+            return "random";
+        }
+    }
+
+    /**
+     * Takes the free car with the lowest car number, so reservations pile up on the
+     * first cars and the last cars keep long free periods.
+     */
+    static class FirstFitStrategy extends CarAssignmentStrategy {
+
+        @Override
+        public Car assign(CarType type, int startDay, int endDay) {
+            Car chosen = null;
+            for (Car car : type.getCars()) {
+                if (car.isAvailable(startDay, endDay)
+                        && (chosen == null || numberOf(car) < numberOf(chosen)))
+                    chosen = car;
+            }
+            return chosen;
+        }
+
+        @Override
+        public String toString() {
+            return "firstFit";
+        }
+    }
+
+    /**
+     * Takes the free car whose free gap around the period leaves the fewest days
+     * unused, so the period fills a gap rather than splitting a long free period.
+     * Gaps that are open on one side count as longer than any closed gap. Ties go
+     * to the lowest car number.
+     */
+    static class BestFitStrategy extends CarAssignmentStrategy {
+
+        @Override
+        public Car assign(CarType type, int startDay, int endDay) {
+            Car chosen = null;
+            long leastWaste = Long.MAX_VALUE;
+            for (Car car : type.getCars()) {
+                if (!car.isAvailable(startDay, endDay))
+                    continue;
+                long waste = ((long) startDay - car.getGapStart(startDay, endDay))
+                        + ((long) car.getGapEnd(startDay, endDay) - endDay);
+                if (chosen == null || waste < leastWaste
+                        || (waste == leastWaste && numberOf(car) < numberOf(chosen))) {
+                    chosen = car;
+                    leastWaste = waste;
+                }
+            }
+            return chosen;
+        }
+
+        @Override
+        public String toString() {
+            return "bestFit";
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package ds.gae.entities;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -11,21 +15,35 @@ import java.util.logging.Logger;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.PostLoad;
+import javax.persistence.Transient;
 
 import com.google.appengine.api.datastore.Key;
 
 import ds.gae.ReservationException;
 
 @Entity
+@NamedQuery(name = CarRentalCompany.NAMES, query = "SELECT company.name FROM CarRentalCompany company")
 public class CarRentalCompany {
 
+	public static final String NAMES = "CarRentalCompany.names";
+
 	private static Logger logger = Logger.getLogger(CarRentalCompany.class.getName());
 	
 	@Id
 	private String name;
     @OneToMany(cascade = CascadeType.ALL)
     private Set<CarType> carTypes = new HashSet<>();
+    // the number of car numbers handed out, see registerCars
+    private int nbOfCarNumbers;
+    // derived from carTypes, rebuilt lazily after the company is loaded or its fleet changed
+    @Transient
+    private volatile FleetIndex fleetIndex;
+    // null for the default strategy
+    @Transient
+    private CarAssignmentStrategy carAssignmentStrategy;
 
 	/***************
 	 * CONSTRUCTOR *
@@ -35,6 +53,7 @@ public class CarRentalCompany {
 		logger.log(Level.INFO, "<{0}> Car Rental Company {0} starting up...", name);
 		setName(name);
 		this.carTypes = carTypes;
+		registerCars();
 	}
 	
 	public CarRentalCompany(){}
@@ -59,6 +78,19 @@ public class CarRentalCompany {
 		return carTypes;
 	}
 	
+	/**
+	 * Add the given car type, unless this company already has a car type with the same name.
+	 * 
+	 * @return	True if the car type was added, false otherwise.
+	 */
+	public boolean addCarType(CarType type) {
+		if (!carTypes.add(type))
+			return false;
+		registerCars();
+		resetFleetIndex();
+		return true;
+	}
+	
 	public CarType getCarType(String carTypeName) {
 	    for(CarType type : getCarTypes())
 	    {
@@ -70,62 +102,182 @@ public class CarRentalCompany {
 	
 	public boolean isAvailable(String carTypeName, Date start, Date end) {
 		logger.log(Level.INFO, "<{0}> Checking availability for car type {1}", new Object[]{name, carTypeName});
-		return getAvailableCarTypes(start, end).contains(getCarType(carTypeName));
+		return isAvailable(getCarType(carTypeName), EpochDays.of(start), EpochDays.of(end));
 	}
 	
 	public Set<CarType> getAvailableCarTypes(Date start, Date end) {
 		Set<CarType> availableCarTypes = new HashSet<CarType>();
+		int startDay = EpochDays.of(start);
+		int endDay = EpochDays.of(end);
 		for (CarType type : carTypes) 
 		{
-			for(Car car : type.getCars())
-		    {
-			    if (car.isAvailable(start, end))
-			    {
-			        availableCarTypes.add(type);
-			        break;
-			    }
-		    }				
+			if (isAvailable(type, startDay, endDay))
+			    availableCarTypes.add(type);
 		}
 		return availableCarTypes;
 	}
 	
+	private boolean isAvailable(CarType type, int startDay, int endDay) {
+	    // the capacity calendar rules out fully booked periods without a per-car scan
+	    if (!type.hasCapacity(startDay, endDay))
+	        return false;
+	    for(Car car : type.getCars())
+	    {
+	        if (car.isAvailable(startDay, endDay))
+	            return true;
+	    }
+	    return false;
+	}
+	
 	/*********
 	 * CARS *
 	 *********/
 	
+	/**
+	 * Get the car with the given key, or null if this company has none. The index is 
+	 * rebuilt when the fleet changes or the company is loaded, not on a miss.
+	 */
 	private Car getCar(Key uid) {
-		for (CarType carType : carTypes) {
-		    for(Car car : carType.getCars())
-			{
-		        if (car.getId() == uid)
-		              return car;
-			}
-		}
-		throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
+		return getFleetIndex().carsById.get(uid);
 	}
 	
+	/**
+	 * Get all cars of this company. The set must not be changed; 
+	 * cars are added through {@link #addCar(String, Car)}.
+	 */
 	public Set<Car> getCars()
 	{
-	    Set<Car> cars = new HashSet<>();
-	    for(CarType type : carTypes)
+	    return Collections.unmodifiableSet(getFleetIndex().typesByCar.keySet());
+	}
+	
+	/**
+	 * Get the car type of the given car of this company.
+	 */
+	public CarType getCarType(Car car)
+	{
+	    CarType type = getFleetIndex().typesByCar.get(car);
+	    if (type == null)
+	        throw new IllegalArgumentException("<" + name + "> No car with uid " + car.getId());
+	    return type;
+	}
+	
+	/**
+	 * Add the given new car, which has no reservations yet, to the car type with the given name.
+	 * The car can only be found by its key if it has its key when it is added.
+	 */
+	public void addCar(String carTypeName, Car car)
+	{
+	    getCarType(carTypeName).addCar(car);
+	    car.setNumber(nbOfCarNumbers++);
+	    resetFleetIndex();
+	}
+	
+	/**
+	 * Give every car of this company that has none yet a number. Car numbers are dense 
+	 * and never reused: the cars of this company are numbered 0 up to 
+	 * {@link #getNbOfCarNumbers()}, so they can index arrays. New cars are numbered when 
+	 * they are added, this is only needed for cars that were stored without a number.
+	 * 
+	 * @return	The number of cars that were given a number.
+	 */
+	public int registerCars()
+	{
+	    int registered = 0;
+	    for (CarType type : carTypes)
 	    {
-	        cars.addAll(type.getCars());
+	        for (Car car : type.getCars())
+	        {
+	            if (!car.hasNumber())
+	            {
+	                car.setNumber(nbOfCarNumbers++);
+	                registered++;
+	            }
+	        }
 	    }
-	    return cars;
+	    if (registered > 0)
+	        resetFleetIndex();
+	    return registered;
 	}
 	
-	private List<Car> getAvailableCars(String carType, Date start, Date end) {
-		List<Car> availableCars = new LinkedList<Car>();
-		for (CarType type : carTypes) {
-			if (type.getName().equals(carType)) {
-				for(Car car : type.getCars())
-				{
-				    if(car.isAvailable(start, end))
-		                availableCars.add(car);
-				}
-			}
-		}
-		return availableCars;
+	/**
+	 * Get the number of car numbers handed out, i.e. one more than the highest car number.
+	 */
+	public int getNbOfCarNumbers()
+	{
+	    return nbOfCarNumbers;
+	}
+	
+	/**
+	 * Get the car with the given number.
+	 * 
+	 * @throws	IllegalArgumentException
+	 * 			This company has no car with the given number.
+	 */
+	public Car getCar(int number)
+	{
+	    Car[] cars = getFleetIndex().carsByNumber;
+	    if (number < 0 || number >= cars.length || cars[number] == null)
+	        throw new IllegalArgumentException("<" + name + "> No car with number " + number);
+	    return cars[number];
+	}
+	
+	private FleetIndex getFleetIndex()
+	{
+	    // built completely before it is published, so parallel readers never see a partial index
+	    FleetIndex index = fleetIndex;
+	    if (index == null)
+	    {
+	        index = new FleetIndex(carTypes, nbOfCarNumbers);
+	        fleetIndex = index;
+	    }
+	    return index;
+	}
+	
+	@PostLoad
+	private void resetFleetIndex()
+	{
+	    fleetIndex = null;
+	}
+	
+	/**
+	 * The cars of a company by key and by number, and the car type of every car. 
+	 * The final fields let readers share an index without locking.
+	 */
+	private static class FleetIndex
+	{
+	    private final Map<Key, Car> carsById = new HashMap<>();
+	    private final Map<Car, CarType> typesByCar = new IdentityHashMap<>();
+	    private final Car[] carsByNumber;
+	    
+	    private FleetIndex(Set<CarType> carTypes, int nbOfCarNumbers)
+	    {
+	        carsByNumber = new Car[nbOfCarNumbers];
+	        for (CarType type : carTypes)
+	        {
+	            for (Car car : type.getCars())
+	            {
+	                if (car.getId() != null)
+	                    carsById.put(car.getId(), car);
+	                if (car.hasNumber())
+	                    carsByNumber[car.getNumber()] = car;
+	                typesByCar.put(car, type);
+	            }
+	        }
+	    }
+	}
+	
+	/**
+	 * Get the strategy that chooses the car of a new reservation. 
+	 * Unless set, this is the default {@link CarAssignmentStrategy#get()}.
+	 */
+	public CarAssignmentStrategy getCarAssignmentStrategy()
+	{
+	    return carAssignmentStrategy != null ? carAssignmentStrategy : CarAssignmentStrategy.get();
+	}
+	
+	public void setCarAssignmentStrategy(CarAssignmentStrategy carAssignmentStrategy)
+	{
+	    this.carAssignmentStrategy = carAssignmentStrategy;
 	}
 
 	/****************
@@ -139,36 +291,91 @@ public class CarRentalCompany {
 		
 		CarType type = getCarType(constraints.getCarType());
 		
-		if(!isAvailable(constraints.getCarType(), constraints.getStartDate(), constraints.getEndDate()))
+		logger.log(Level.INFO, "<{0}> Checking availability for car type {1}", new Object[]{name, constraints.getCarType()});
+		int startDay = EpochDays.of(constraints.getStartDate());
+		int endDay = EpochDays.of(constraints.getEndDate());
+		if(!isAvailable(type, startDay, endDay))
 			throw new ReservationException("<" + name
 				+ "> No cars available to satisfy the given constraints.");
 		
-		double price = calculateRentalPrice(type.getRentalPricePerDay(),constraints.getStartDate(), constraints.getEndDate());
+		double price = calculateRentalPrice(type.getRentalPricePerDay(), startDay, endDay);
 		
 		return new Quote(client, constraints.getStartDate(), constraints.getEndDate(), getName(), constraints.getCarType(), price);
 	}
 
+	/**
+	 * Create a quote for every car type that is available in the period of the given 
+	 * constraints and accepted by the given filter. If the constraints name a car type, 
+	 * only that car type is considered.
+	 */
+	public List<Quote> createQuotes(ReservationConstraints constraints, CarTypeFilter filter, String client) {
+		int startDay = EpochDays.of(constraints.getStartDate());
+		int endDay = EpochDays.of(constraints.getEndDate());
+		List<Quote> quotes = new ArrayList<>();
+		for (CarType type : carTypes) {
+			if (constraints.getCarType() != null && !constraints.getCarType().equals(type.getName()))
+				continue;
+			if (filter.accepts(type) && isAvailable(type, startDay, endDay)) {
+				double price = calculateRentalPrice(type.getRentalPricePerDay(), startDay, endDay);
+				quotes.add(new Quote(client, constraints.getStartDate(), constraints.getEndDate(), getName(), type.getName(), price));
+			}
+		}
+		return quotes;
+	}
+
 	// Implementation can be subject to different pricing strategies
-	private double calculateRentalPrice(double rentalPricePerDay, Date start, Date end) {
-		return rentalPricePerDay * Math.ceil((end.getTime() - start.getTime())
-						/ (1000 * 60 * 60 * 24D));
+	private double calculateRentalPrice(double rentalPricePerDay, int startDay, int endDay) {
+		return rentalPricePerDay * (endDay - startDay);
 	}
 
 	public Reservation confirmQuote(Quote quote) throws ReservationException {
 		logger.log(Level.INFO, "<{0}> Reservation of {1}", new Object[]{name, quote.toString()});
-		List<Car> availableCars = getAvailableCars(quote.getCarType(), quote.getStartDate(), quote.getEndDate());
-		if(availableCars.isEmpty())
+		CarType type = getCarType(quote.getCarType());
+		int startDay = quote.getStartDay();
+		int endDay = quote.getEndDay();
+		Car car = type.hasCapacity(startDay, endDay) 
+				? getCarAssignmentStrategy().assign(type, startDay, endDay) : null;
+		if(car == null)
 			throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
 	                + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
-		Car car = availableCars.get((int)(Math.random()*availableCars.size()));
 		
 		Reservation res = new Reservation(quote, car.getId());
-		car.addReservation(res);
+		type.addReservation(car, res);
 		return res;
 	}
 
 	public void cancelReservation(Reservation res) {
 		logger.log(Level.INFO, "<{0}> Cancelling reservation {1}", new Object[]{name, res.toString()});
-		getCar(res.getCarId()).removeReservation(res);
+		Car car = getCar(res.getCarId());
+		if (car == null)
+			throw new IllegalArgumentException("<" + name + "> No car with uid " + res.getCarId());
+		getCarType(car).removeReservation(car, res);
+	}
+	
+	/**
+	 * Remove at most max reservations that end on or before the given epoch day
+	 * from the cars of this company. They can no longer overlap a new reservation.
+	 * 
+	 * @return	The removed reservations.
+	 */
+	public List<Reservation> removeReservationsEndingBy(int horizonDay, int max) {
+		List<Reservation> removed = new ArrayList<>();
+		for (CarType type : carTypes) {
+			for (Car car : type.getCars()) {
+				List<Reservation> ended = new ArrayList<>();
+				for (Reservation res : car.getReservations()) {
+					if (removed.size() + ended.size() >= max)
+						break;
+					if (res.getEndDay() <= horizonDay)
+						ended.add(res);
+				}
+				for (Reservation res : ended)
+					type.removeReservation(car, res);
+				removed.addAll(ended);
+				if (removed.size() >= max)
+					return removed;
+			}
+		}
+		return removed;
 	}
-}
\ No newline at end of file
+}
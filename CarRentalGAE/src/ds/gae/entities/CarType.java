@@ -1,5 +1,6 @@
 package ds.gae.entities;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -9,11 +10,15 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.PostLoad;
+import javax.persistence.Transient;
 
 import com.google.appengine.api.datastore.Key;
 
 @Entity
-public class CarType {
+public class CarType implements Serializable {
+    
+    private static final long serialVersionUID = 4823705264919574210L;
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,6 +31,9 @@ public class CarType {
     private float trunkSpace;
     @OneToMany(cascade = CascadeType.ALL)
     private Set<Car> cars = new HashSet<Car>();
+    // booked cars per day, derived from the reservations of the cars
+    @Transient
+    private volatile CapacityCalendar calendar;
     
     /***************
 	 * CONSTRUCTOR *
@@ -41,6 +49,15 @@ public class CarType {
     
     public CarType(){}
     
+    /**
+     * Create a copy of this car type without its cars, e.g. to cache it.
+     */
+    public CarType copyWithoutCars() {
+        CarType copy = new CarType(name, nbOfSeats, trunkSpace, rentalPricePerDay, smokingAllowed);
+        copy.setId(id);
+        return copy;
+    }
+    
     public Key getId()
     {
         return id;
@@ -104,6 +121,113 @@ public class CarType {
     public void setCars(Set<Car> cars)
     {
         this.cars = cars;
+        this.calendar = null;
+    }
+    
+    /**
+     * Add the given new car, which has no reservations yet. Cars of a company
+     * are added through {@link CarRentalCompany#addCar(String, Car)}, which
+     * keeps the index of the company up to date.
+     */
+    public void addCar(Car car)
+    {
+        this.cars.add(car);
+    }
+    
+    /************
+     * CAPACITY *
+     ************/
+    
+    /**
+     * Check whether, on every day of the given period, fewer cars of this type
+     * are booked than there are cars. This is a necessary condition for a car of
+     * this type to be available for the whole period [startDay, endDay) of epoch days.
+     */
+    public boolean hasCapacity(int startDay, int endDay) {
+        if(startDay >= endDay)
+            throw new IllegalArgumentException("Illegal given period");
+        return getCalendar().max(startDay, endDay) < cars.size();
+    }
+    
+    /**
+     * Check whether, on every day of the given period, the booked cars of this type and
+     * the given number of held cars together are fewer than there are cars.
+     * 
+     * @param   held
+     *          the number of held cars on day startDay + i, for every i in [0, endDay - startDay)
+     */
+    public boolean hasCapacity(int startDay, int endDay, int[] held) {
+        if(startDay >= endDay)
+            throw new IllegalArgumentException("Illegal given period");
+        CapacityCalendar calendar = getCalendar();
+        for(int day = startDay; day < endDay; day++) {
+            if(calendar.max(day, day + 1) + held[day - startDay] >= cars.size())
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Count the free cars of this type on every day of [fromDay, fromDay + nbOfDays).
+     * The count is made in one sweep over the reservations: a reservation books a car
+     * from its start day on and frees it again on its end day, and a running sum of
+     * these changes gives the number of booked cars per day.
+     * 
+     * @return  The number of free cars on day fromDay + i, for every i in [0, nbOfDays).
+     */
+    public int[] getFreeCarsPerDay(int fromDay, int nbOfDays) {
+        if(nbOfDays < 1)
+            throw new IllegalArgumentException("Illegal given period");
+        int toDay = fromDay + nbOfDays;
+        int[] changes = new int[nbOfDays + 1];
+        for(Car car : cars) {
+            for(Reservation res : car.getReservations()) {
+                int start = Math.max(res.getStartDay(), fromDay);
+                int end = Math.min(res.getEndDay(), toDay);
+                if(start < end) {
+                    changes[start - fromDay]++;
+                    changes[end - fromDay]--;
+                }
+            }
+        }
+        int[] free = new int[nbOfDays];
+        int booked = 0;
+        for(int day = 0; day < nbOfDays; day++) {
+            booked += changes[day];
+            free[day] = cars.size() - booked;
+        }
+        return free;
+    }
+    
+    public void addReservation(Car car, Reservation res) {
+        CapacityCalendar calendar = getCalendar();
+        if(car.addReservation(res))
+            calendar.add(res.getStartDay(), res.getEndDay(), 1);
+    }
+    
+    public void removeReservation(Car car, Reservation res) {
+        CapacityCalendar calendar = getCalendar();
+        if(car.removeReservation(res))
+            calendar.add(res.getStartDay(), res.getEndDay(), -1);
+    }
+    
+    private CapacityCalendar getCalendar() {
+        CapacityCalendar current = calendar;
+        if(current == null) {
+            // built completely before it is published, so parallel readers never see a partial calendar
+            current = new CapacityCalendar();
+            for(Car car : cars) {
+                for(Reservation res : car.getReservations())
+                    current.add(res.getStartDay(), res.getEndDay(), 1);
+            }
+            calendar = current;
+        }
+        return current;
+    }
+    
+    @PostLoad
+    private void resetCalendar() {
+        calendar = null;
     }
     
     /*************
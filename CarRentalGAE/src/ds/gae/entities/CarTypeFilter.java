@@ -0,0 +1,59 @@
+package ds.gae.entities;
+
+/**
+ * Optional requirements on the car types found by a search. A new filter
+ * accepts every car type; each setter narrows it down.
+ */
+public class CarTypeFilter {
+
+    private int minSeats;
+    private float minTrunkSpace;
+    private double maxPricePerDay = Double.POSITIVE_INFINITY;
+    // null if smoking does not matter
+    private Boolean smokingAllowed;
+
+    public int getMinSeats() {
+        return minSeats;
+    }
+
+    public void setMinSeats(int minSeats) {
+        this.minSeats = minSeats;
+    }
+
+    public float getMinTrunkSpace() {
+        return minTrunkSpace;
+    }
+
+    public void setMinTrunkSpace(float minTrunkSpace) {
+        this.minTrunkSpace = minTrunkSpace;
+    }
+
+    public double getMaxPricePerDay() {
+        return maxPricePerDay;
+    }
+
+    public void setMaxPricePerDay(double maxPricePerDay) {
+        this.maxPricePerDay = maxPricePerDay;
+    }
+
+    public Boolean getSmokingAllowed() {
+        return smokingAllowed;
+    }
+
+    public void setSmokingAllowed(Boolean smokingAllowed) {
+        this.smokingAllowed = smokingAllowed;
+    }
+
+    public boolean accepts(CarType type) {
+        return type.getNbOfSeats() >= minSeats
+                && type.getTrunkSpace() >= minTrunkSpace
+                && type.getRentalPricePerDay() <= maxPricePerDay
+                && (smokingAllowed == null || type.getSmokingAllowed() == smokingAllowed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Car type filter [at least %d seats and %.1f trunk space, at most %.2f per day, smoking %s]",
+                minSeats, minTrunkSpace, maxPricePerDay, smokingAllowed == null ? "any" : smokingAllowed);
+    }
+}
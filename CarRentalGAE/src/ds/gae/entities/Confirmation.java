@@ -0,0 +1,139 @@
+package ds.gae.entities;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.NamedQuery;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Outcome of an asynchronous confirmation of the quotes of a car renter.
+ */
+@Entity
+@NamedQuery(name = Confirmation.BY_RENTER,
+        query = "SELECT confirmation FROM Confirmation confirmation WHERE confirmation.carRenter = :renter")
+public class Confirmation {
+
+    public static final String BY_RENTER = "Confirmation.byRenter";
+
+    /**
+     * A confirmation is PENDING until a task claims it, IN_PROGRESS while that task
+     * books its quotes, and CONFIRMED or FAILED afterwards. A claim is a lease: once
+     * it has expired, another delivery of the task can claim the confirmation again.
+     */
+    public enum Status { PENDING, IN_PROGRESS, CONFIRMED, FAILED }
+
+    @Id
+    private String id;
+    private String carRenter;
+    @Enumerated(EnumType.STRING)
+    private Status status;
+    private String message;
+    private int nbOfQuotes;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+    // when the confirmation was last claimed
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date claimed;
+    // the number of times the confirmation was claimed
+    private int attempts;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public Confirmation(String id, String carRenter, int nbOfQuotes) {
+        this.id = id;
+        this.carRenter = carRenter;
+        this.nbOfQuotes = nbOfQuotes;
+        this.status = Status.PENDING;
+        this.created = new Date();
+    }
+
+    public Confirmation() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCarRenter() {
+        return carRenter;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public int getNbOfQuotes() {
+        return nbOfQuotes;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public Date getClaimed() {
+        return claimed;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isPending() {
+        return status == Status.PENDING;
+    }
+
+    /**
+     * Check whether a delivery can claim this confirmation at the given time: it is
+     * pending, or it was claimed longer than the given lease ago.
+     */
+    public boolean isClaimable(long now, long leaseMillis) {
+        if (status == Status.PENDING)
+            return true;
+        // confirmations claimed before claims were leases have no claim time
+        return status == Status.IN_PROGRESS && (claimed == null || claimed.getTime() + leaseMillis <= now);
+    }
+
+    /**
+     * Claim this confirmation at the given time.
+     */
+    public void claim(long now) {
+        status = Status.IN_PROGRESS;
+        claimed = new Date(now);
+        attempts++;
+    }
+
+    /**
+     * Check whether the outcome of this confirmation is known.
+     */
+    public boolean isDone() {
+        return status == Status.CONFIRMED || status == Status.FAILED;
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("Confirmation %s for %s of %d quote(s): %s", 
+                getId(), getCarRenter(), getNbOfQuotes(), getStatus());
+    }
+}
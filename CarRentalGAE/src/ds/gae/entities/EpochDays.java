@@ -0,0 +1,39 @@
+package ds.gae.entities;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Conversion between dates and epoch days, i.e. the number of days since
+ * 1 January 1970 in the default time zone. Reservation dates are stored
+ * with day precision, so the epoch day identifies them completely.
+ *
+ * Periods of epoch days are half-open: [startDay, endDay) covers the days from
+ * startDay up to, but not including, endDay. A car returned on a day can thus
+ * be picked up again on that same day.
+ */
+public final class EpochDays {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private EpochDays() {}
+
+    public static int of(Date date) {
+        long millis = date.getTime();
+        long local = millis + TimeZone.getDefault().getOffset(millis);
+        long day = local / MILLIS_PER_DAY;
+        if (local % MILLIS_PER_DAY < 0)
+            day--;
+        return (int) day;
+    }
+
+    /**
+     * Get the start of the given epoch day in the default time zone.
+     */
+    public static Date toDate(int day) {
+        long local = day * MILLIS_PER_DAY;
+        long millis = local - TimeZone.getDefault().getOffset(local);
+        // the offset can differ between local time and the instant, around a change of daylight saving time
+        return new Date(local - TimeZone.getDefault().getOffset(millis));
+    }
+}
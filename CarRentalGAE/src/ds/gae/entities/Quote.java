@@ -1,11 +1,15 @@
 package ds.gae.entities;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Date;
 
 import javax.persistence.MappedSuperclass;
+import javax.persistence.PostLoad;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 
 @MappedSuperclass
 public class Quote implements Serializable {
@@ -18,6 +22,18 @@ public class Quote implements Serializable {
     private String rentalCompany;
     private String carType;
     private double rentalPrice;
+    // the dates as epoch days, derived lazily: the dates are what is persisted
+    @Transient
+    private transient int startDay = NO_DAY;
+    @Transient
+    private transient int endDay = NO_DAY;
+    
+    // the tentative hold on a car for this quote, see ds.gae.QuoteHolds; not persisted, 
+    // but serialized with the quote so queued confirmations keep their hold
+    @Transient
+    private String holdId;
+    
+    private static final int NO_DAY = Integer.MIN_VALUE;
     
     /***************
 	 * CONSTRUCTOR *
@@ -41,6 +57,7 @@ public class Quote implements Serializable {
     public void setStartDate(Date startDate)
     {
         this.startDate = startDate;
+        this.startDay = NO_DAY;
     }
 
     public Date getEndDate() {
@@ -50,6 +67,54 @@ public class Quote implements Serializable {
     public void setEndDate(Date endDate)
     {
         this.endDate = endDate;
+        this.endDay = NO_DAY;
+    }
+    
+    /**
+     * Get the epoch day of the start date, the first day of the rental period.
+     */
+    public int getStartDay() {
+        if (startDay == NO_DAY)
+            startDay = EpochDays.of(startDate);
+        return startDay;
+    }
+    
+    /**
+     * Get the epoch day of the end date. The rental period is [startDay, endDay):
+     * the car is returned on the end day and can be rented out again that day.
+     */
+    public int getEndDay() {
+        if (endDay == NO_DAY)
+            endDay = EpochDays.of(endDate);
+        return endDay;
+    }
+    
+    @PostLoad
+    private void resetDays() {
+        startDay = NO_DAY;
+        endDay = NO_DAY;
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // deserialization leaves transient fields at 0, which is a valid epoch day
+        resetDays();
+    }
+
+    public boolean hasHold() {
+        return holdId != null;
+    }
+    
+    /**
+     * Get the id of the hold on a car for this quote, or null if it has none.
+     */
+    public String getHoldId() {
+        return holdId;
+    }
+    
+    public void setHoldId(String holdId)
+    {
+        this.holdId = holdId;
     }
 
     public String getCarRenter() {
@@ -4,16 +4,29 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 
 import com.google.appengine.api.datastore.Key;
 
 @Entity
+@NamedQueries({
+    @NamedQuery(name = Reservation.BY_RENTER, 
+            query = "SELECT reservation FROM Reservation reservation WHERE reservation.carRenter = :renter"),
+    @NamedQuery(name = Reservation.IDS_BY_RENTER, 
+            query = "SELECT reservation.id FROM Reservation reservation WHERE reservation.carRenter = :renter")
+})
 public class Reservation extends Quote {
 
+    public static final String BY_RENTER = "Reservation.byRenter";
+    public static final String IDS_BY_RENTER = "Reservation.idsByRenter";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Key id;
     private Key carId;
+    // the asynchronous confirmation that booked this reservation, if any
+    private String confirmationId;
     
     /***************
 	 * CONSTRUCTOR *
@@ -53,6 +66,16 @@ public class Reservation extends Quote {
         this.carId = carId;
     }
     
+    public String getConfirmationId()
+    {
+        return confirmationId;
+    }
+    
+    public void setConfirmationId(String confirmationId)
+    {
+        this.confirmationId = confirmationId;
+    }
+    
     /*************
      * TO STRING *
      *************/
@@ -76,7 +99,7 @@ public class Reservation extends Quote {
 		if (!super.equals(obj))
 			return false;
 		Reservation other = (Reservation) obj;
-		if (carId != other.carId)
+		if (!carId.equals(other.carId))
 			return false;
 		return true;
 	}
@@ -7,11 +7,23 @@ public class ReservationConstraints {
     private Date startDate;
     private Date endDate;
     private String carType;
+    private String company;
 	
     public ReservationConstraints(Date start, Date end, String carType){
+    	this(start, end, carType, null);
+    }
+    
+    /**
+     * @param	carType
+     * 			the name of the car type, or null for any car type (when searching)
+     * @param	company
+     * 			the name of the car rental company, or null for any company (when searching)
+     */
+    public ReservationConstraints(Date start, Date end, String carType, String company){
     	setStartDate(start);
     	setEndDate(end);
     	setCarType(carType);
+    	setCompany(company);
     }
     
     public Date getStartDate() {
@@ -37,11 +49,19 @@ public class ReservationConstraints {
 	private void setCarType(String carType) {
 		this.carType = carType;
 	}
+	
+	public String getCompany() {
+		return company;
+	}
+	
+	private void setCompany(String company) {
+		this.company = company;
+	}
 
 	@Override
 	public String toString() {
-            return String.format("Reservation constraints [from %s until %s, for car type '%s']", 
-                    getStartDate(), getEndDate(), getCarType());
+            return String.format("Reservation constraints [from %s until %s, for car type '%s' at company '%s']", 
+                    getStartDate(), getEndDate(), getCarType(), getCompany());
 	}
 
 	@Override
@@ -52,6 +72,7 @@ public class ReservationConstraints {
 		result = prime * result
 				+ ((startDate == null) ? 0 : startDate.hashCode());
 		result = prime * result + ((carType == null) ? 0 : carType.hashCode());
+		result = prime * result + ((company == null) ? 0 : company.hashCode());
 		return result;
 	}
 
@@ -79,6 +100,11 @@ public class ReservationConstraints {
 				return false;
 		} else if (!carType.equals(other.carType))
 			return false;
+		if (company == null) {
+			if (other.company != null)
+				return false;
+		} else if (!company.equals(other.company))
+			return false;
 		return true;
 	}   
 }
\ No newline at end of file
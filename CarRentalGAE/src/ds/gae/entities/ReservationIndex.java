@@ -0,0 +1,169 @@
+package ds.gae.entities;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * In-memory interval index over the reservations of a single car.
+ *
+ * Reservations are kept sorted on their start day, together with a running
+ * maximum of their end days. An overlap query then only needs one binary
+ * search: the last reservation that starts before the end of the queried
+ * period determines, through the running maximum, whether any reservation
+ * reaches into the period. Queries cost O(log n) without allocating, updates O(n).
+ *
+ * Periods are half-open ranges of epoch days, see {@link EpochDays}. Days are
+ * kept in int arrays, so an indexed reservation costs 12 bytes besides the
+ * reference to it.
+ *
+ * The index is not persisted; it is derived from the reservations of a car
+ * and rebuilt whenever that car is loaded.
+ */
+public class ReservationIndex {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final Comparator<Reservation> BY_START = new Comparator<Reservation>() {
+        @Override
+        public int compare(Reservation r1, Reservation r2) {
+            return Integer.compare(r1.getStartDay(), r2.getStartDay());
+        }
+    };
+
+    private int[] starts;
+    private int[] ends;
+    // maxEnds[i] is the latest end day of the reservations 0..i
+    private int[] maxEnds;
+    private Reservation[] entries;
+    private int size;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ReservationIndex(Collection<Reservation> reservations) {
+        Reservation[] sorted = reservations.toArray(new Reservation[reservations.size()]);
+        Arrays.sort(sorted, BY_START);
+        int capacity = Math.max(INITIAL_CAPACITY, sorted.length);
+        starts = new int[capacity];
+        ends = new int[capacity];
+        maxEnds = new int[capacity];
+        entries = new Reservation[capacity];
+        for (Reservation reservation : sorted) {
+            starts[size] = reservation.getStartDay();
+            ends[size] = reservation.getEndDay();
+            entries[size] = reservation;
+            size++;
+        }
+        updateMaxEnds(0);
+    }
+
+    /***********
+     * QUERIES *
+     ***********/
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether any indexed reservation overlaps the given period [startDay, endDay).
+     */
+    public boolean overlaps(int startDay, int endDay) {
+        int last = lastStartingAtOrBefore(endDay - 1);
+        return last >= 0 && maxEnds[last] > startDay;
+    }
+
+    /**
+     * Get the first day of the free gap around the given free period [startDay, endDay),
+     * i.e. the latest end day of the reservations before it, or Integer.MIN_VALUE if
+     * there are none. The result is meaningless if the period is not free.
+     */
+    public int gapStart(int startDay, int endDay) {
+        int last = lastStartingAtOrBefore(endDay - 1);
+        return last >= 0 ? maxEnds[last] : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Get the end day (exclusive) of the free gap around the given free period [startDay, endDay),
+     * i.e. the earliest start day of the reservations after it, or Integer.MAX_VALUE if
+     * there are none. The result is meaningless if the period is not free.
+     */
+    public int gapEnd(int startDay, int endDay) {
+        int next = lastStartingAtOrBefore(endDay - 1) + 1;
+        return next < size ? starts[next] : Integer.MAX_VALUE;
+    }
+
+    /***********
+     * UPDATES *
+     ***********/
+
+    public void add(Reservation reservation) {
+        int start = reservation.getStartDay();
+        ensureCapacity(size + 1);
+        int pos = lastStartingAtOrBefore(start) + 1;
+        int moved = size - pos;
+        System.arraycopy(starts, pos, starts, pos + 1, moved);
+        System.arraycopy(ends, pos, ends, pos + 1, moved);
+        System.arraycopy(entries, pos, entries, pos + 1, moved);
+        starts[pos] = start;
+        ends[pos] = reservation.getEndDay();
+        entries[pos] = reservation;
+        size++;
+        updateMaxEnds(pos);
+    }
+
+    public boolean remove(Reservation reservation) {
+        int start = reservation.getStartDay();
+        for (int i = lastStartingAtOrBefore(start); i >= 0 && starts[i] == start; i--) {
+            if (entries[i].equals(reservation)) {
+                int moved = size - i - 1;
+                System.arraycopy(starts, i + 1, starts, i, moved);
+                System.arraycopy(ends, i + 1, ends, i, moved);
+                System.arraycopy(entries, i + 1, entries, i, moved);
+                size--;
+                entries[size] = null;
+                updateMaxEnds(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    // index of the last reservation with a start day <= day, or -1 if none
+    private int lastStartingAtOrBefore(int day) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= day)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high;
+    }
+
+    private void updateMaxEnds(int from) {
+        int max = from > 0 ? maxEnds[from - 1] : Integer.MIN_VALUE;
+        for (int i = from; i < size; i++) {
+            max = Math.max(max, ends[i]);
+            maxEnds[i] = max;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= starts.length)
+            return;
+        int newCapacity = Math.max(capacity, starts.length * 2);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        maxEnds = Arrays.copyOf(maxEnds, newCapacity);
+        entries = Arrays.copyOf(entries, newCapacity);
+    }
+}
@@ -0,0 +1,156 @@
+package ds.gae.listener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ds.gae.CarRentalModel;
+import ds.gae.CatalogCache;
+import ds.gae.RequestThreads;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+
+/**
+ * Loads the fleets of car rental companies from CSV files on the class path, in
+ * the format of hertz.csv: one line per car type with its name, number of seats,
+ * trunk space, price per day, whether smoking is allowed and its number of cars.
+ *
+ * Files are read line by line and cars are stored in batches of at most
+ * <code>ds.gae.fleetLoader.batchSize</code> cars, one transaction per batch, so
+ * the size of a fleet is not limited by memory or by the size of a transaction.
+ * Companies are loaded in parallel on <code>ds.gae.fleetLoader.threads</code> threads.
+ * The batches of a company are stored one after the other: its cars are all in its
+ * entity group, whose transactions the datastore serializes anyway.
+ *
+ * Loading is idempotent: only the car types and cars that are missing from the
+ * stored fleet are added. An interrupted load thus resumes where it stopped.
+ */
+public class FleetLoader {
+
+    private static final Logger logger = Logger.getLogger(FleetLoader.class.getName());
+
+    private final int batchSize;
+    private final int nbOfThreads;
+
+    public FleetLoader(int batchSize, int nbOfThreads) {
+        if (batchSize < 1 || nbOfThreads < 1)
+            throw new IllegalArgumentException("Batch size and number of threads must be positive");
+        this.batchSize = batchSize;
+        this.nbOfThreads = nbOfThreads;
+    }
+
+    public static FleetLoader fromSystemProperties() {
+        return new FleetLoader(Integer.getInteger("ds.gae.fleetLoader.batchSize", 500),
+                Integer.getInteger("ds.gae.fleetLoader.threads", 4));
+    }
+
+    /**
+     * Load the given fleets and wait until all of them are loaded. A company that
+     * fails to load is logged and does not stop the others.
+     *
+     * @param   fleets
+     *          the fleet file on the class path of every company, by company name
+     * @return  True if all fleets were loaded completely, false otherwise.
+     */
+    public boolean load(Map<String, String> fleets) {
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(nbOfThreads, Math.max(1, fleets.size())), RequestThreads.factory("fleet-loader"));
+        try {
+            List<Future<Boolean>> loads = new ArrayList<>();
+            for (final Map.Entry<String, String> fleet : fleets.entrySet()) {
+                loads.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        try {
+                            load(fleet.getKey(), fleet.getValue());
+                            return true;
+                        } catch (IOException | RuntimeException e) {
+                            logger.log(Level.SEVERE, "Loading " + fleet.getKey() + " from " + fleet.getValue() + " failed", e);
+                            return false;
+                        }
+                    }
+                }));
+            }
+            boolean complete = true;
+            for (Future<Boolean> load : loads)
+                complete &= load.get();
+            logger.log(Level.INFO, "Loaded {0} fleets in {1} ms", new Object[]{fleets.size(), System.currentTimeMillis() - start});
+            return complete;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Load the fleet of the given company from the given file on the class path.
+     */
+    public void load(String company, String datafile) throws IOException {
+        logger.log(Level.INFO, "<{0}> Loading fleet from file {1}", new Object[]{company, datafile});
+        CarRentalModel model = CarRentalModel.get();
+        if (!model.hasRentalCompany(company))
+            model.addRentalCompany(new CarRentalCompany(company, new HashSet<CarType>()));
+        // the sizes must be those of the stored fleet, not of a cached copy
+        CatalogCache.get().invalidateCompany(company);
+        Map<String, Integer> stored = model.getFleetSizes(company);
+
+        InputStream data = FleetLoader.class.getClassLoader().getResourceAsStream(datafile);
+        if (data == null)
+            throw new IOException("Fleet file " + datafile + " not found");
+        int added = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(data, "UTF-8"))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.startsWith("#") || line.trim().isEmpty())
+                    continue;
+                String[] fields = line.split(",");
+                if (fields.length < 6)
+                    throw new IOException(datafile + ":" + lineNumber + ": expected 6 fields but got " + fields.length);
+                CarType type = new CarType(fields[0].trim(),
+                        Integer.parseInt(fields[1].trim()),
+                        Float.parseFloat(fields[2].trim()),
+                        Double.parseDouble(fields[3].trim()),
+                        Boolean.parseBoolean(fields[4].trim()));
+                int nbOfCars = Integer.parseInt(fields[5].trim());
+
+                Integer existing = stored.get(type.getName());
+                if (existing == null) {
+                    model.addCarType(company, type);
+                    existing = 0;
+                }
+                added += loadCars(company, type.getName(), existing, nbOfCars);
+            }
+        }
+        logger.log(Level.INFO, "<{0}> Fleet loaded, {1} cars added", new Object[]{company, added});
+    }
+
+    // adds the cars that are missing from the stored fleet of the car type, batch by batch
+    private int loadCars(String company, String carType, int existing, int nbOfCars) {
+        int stored = existing;
+        while (stored < nbOfCars) {
+            int batch = Math.min(batchSize, nbOfCars - stored);
+            CarRentalModel.get().addCars(company, carType, batch);
+            stored += batch;
+            logger.log(Level.INFO, "<{0}> {1}: {2}/{3} cars", new Object[]{company, carType, stored, nbOfCars});
+        }
+        return stored - existing;
+    }
+}
@@ -0,0 +1,17 @@
+package ds.gae.metrics;
+
+/**
+ * A value that can go up and down, e.g. the time an instance needed to become ready.
+ */
+public class Gauge {
+
+    private volatile double value;
+
+    public double get() {
+        return value;
+    }
+
+    public void set(double value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,119 @@
+package ds.gae.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, with log-linear buckets in the style of
+ * HdrHistogram.
+ *
+ * Every power of two is split into {@value #SUB_BUCKETS} equally wide buckets, so a
+ * recorded value is known to within about 6%, whatever its magnitude. {@link #record(long)} is
+ * lock-free and does not allocate: it computes the bucket with a few bit operations
+ * and increments one counter. Percentiles are computed from the buckets when read.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below SUB_BUCKETS have a bucket each, every further power of two up to 2^62 has SUB_BUCKETS
+    private static final int NB_OF_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Measures the time until it is closed, to be used in a try-with-resources statement.
+     */
+    public class Timer implements AutoCloseable {
+
+        private final long start = System.nanoTime();
+
+        @Override
+        public void close() {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(NB_OF_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /***********
+     * UPDATES *
+     ***********/
+
+    public Timer time() {
+        return new Timer();
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value))
+            ;
+    }
+
+    /***********
+     * QUERIES *
+     ***********/
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the value below which the given fraction of the recorded values lie.
+     *
+     * @param   quantile
+     *          fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return  the upper bound of the bucket that holds the quantile, or 0 if nothing was recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[NB_OF_BUCKETS];
+        for (int i = 0; i < NB_OF_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < NB_OF_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /***********
+     * BUCKETS *
+     ***********/
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,190 @@
+package ds.gae.metrics;
+
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the latency histograms, counters and gauges of this instance, which can be
+ * written in the Prometheus text exposition format.
+ *
+ * A series is identified by a metric name and a list of label names and values,
+ * e.g. <code>histogram("carrental_model_latency_seconds", "method", "createQuote")</code>.
+ * Series are created on first use and live as long as the instance.
+ */
+public final class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final Metrics instance = new Metrics();
+
+    public static Metrics get() {
+        return instance;
+    }
+
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    /**
+     * Get the latency histogram of the given series. Latencies are exported in seconds,
+     * as a summary with the 50th, 90th, 99th and 99.9th percentile.
+     *
+     * @param   labels
+     *          alternating label names and values
+     */
+    public LatencyHistogram histogram(String name, String... labels) {
+        String series = series(name, labels);
+        LatencyHistogram histogram = histograms.get(series);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(series, created);
+            if (histogram == null)
+                histogram = created;
+        }
+        return histogram;
+    }
+
+    /**
+     * Get the counter of the given series.
+     *
+     * @param   labels
+     *          alternating label names and values
+     */
+    public AtomicLong counter(String name, String... labels) {
+        String series = series(name, labels);
+        AtomicLong counter = counters.get(series);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(series, created);
+            if (counter == null)
+                counter = created;
+        }
+        return counter;
+    }
+
+    /**
+     * Get the gauge of the given series.
+     *
+     * @param   labels
+     *          alternating label names and values
+     */
+    public Gauge gauge(String name, String... labels) {
+        String series = series(name, labels);
+        Gauge gauge = gauges.get(series);
+        if (gauge == null) {
+            Gauge created = new Gauge();
+            gauge = gauges.putIfAbsent(series, created);
+            if (gauge == null)
+                gauge = created;
+        }
+        return gauge;
+    }
+
+    /**************
+     * EXPOSITION *
+     **************/
+
+    /**
+     * Write all series in the Prometheus text format (version 0.0.4).
+     */
+    public void write(PrintWriter out) {
+        String family = null;
+        for (Map.Entry<String, AtomicLong> entry : sorted(counters).entrySet()) {
+            family = writeType(out, family, entry.getKey(), "counter");
+            out.println(entry.getKey() + " " + entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : sorted(gauges).entrySet()) {
+            family = writeType(out, family, entry.getKey(), "gauge");
+            out.println(entry.getKey() + " " + entry.getValue().get());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : sorted(histograms).entrySet()) {
+            family = writeType(out, family, entry.getKey(), "summary");
+            String name = nameOf(entry.getKey());
+            String labels = labelsOf(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                out.println(name + "{" + labels + (labels.isEmpty() ? "" : ",") + "quantile=\"" + quantile + "\"} "
+                        + seconds(histogram.getValueAtQuantile(quantile)));
+            }
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            out.println(name + "_sum" + suffix + " " + seconds(histogram.getSum()));
+            out.println(name + "_count" + suffix + " " + histogram.getCount());
+        }
+    }
+
+    /**
+     * Write a single counter, which is not kept in the registry, e.g. one that is
+     * tracked elsewhere. Counters of one metric must be written one after the other.
+     */
+    public static void writeCounter(PrintWriter out, boolean first, String name, long value, String... labels) {
+        if (first)
+            out.println("# TYPE " + name + " counter");
+        out.println(series(name, labels) + " " + value);
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private static String series(String name, String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        if (labels.length == 0)
+            return name;
+        StringBuilder out = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0)
+                out.append(',');
+            out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String nameOf(String series) {
+        int brace = series.indexOf('{');
+        return (brace < 0) ? series : series.substring(0, brace);
+    }
+
+    private static String labelsOf(String series) {
+        int brace = series.indexOf('{');
+        return (brace < 0) ? "" : series.substring(brace + 1, series.length() - 1);
+    }
+
+    // writes the type of a metric before its first series
+    private static String writeType(PrintWriter out, String previous, String series, String type) {
+        String name = nameOf(series);
+        if (!name.equals(previous))
+            out.println("# TYPE " + name + " " + type);
+        return name;
+    }
+
+    // keeps the series of a metric together, '{' sorts after the '_' of longer names
+    private static <V> SortedMap<String, V> sorted(Map<String, V> series) {
+        SortedMap<String, V> out = new TreeMap<>(new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                int byName = nameOf(s1).compareTo(nameOf(s2));
+                return (byName != 0) ? byName : s1.compareTo(s2);
+            }
+        });
+        out.putAll(series);
+        return out;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / NANOS_PER_SECOND;
+    }
+}
@@ -0,0 +1,40 @@
+package ds.gae.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Records the latency of every request to the servlets it is mapped to, per servlet
+ * path and HTTP method, and counts the requests that end in an exception.
+ */
+public class MetricsFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        String path = request.getServletPath();
+        try (LatencyHistogram.Timer timer = Metrics.get().histogram("carrental_servlet_latency_seconds", 
+                "path", path, "method", request.getMethod()).time()) {
+            chain.doFilter(req, resp);
+        } catch (IOException | ServletException | RuntimeException e) {
+            Metrics.get().counter("carrental_servlet_exceptions_total", "path", path).incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
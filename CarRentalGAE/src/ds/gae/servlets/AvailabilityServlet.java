@@ -0,0 +1,75 @@
+package ds.gae.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Date;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import ds.gae.AvailabilityCalendar;
+import ds.gae.CarRentalModel;
+import ds.gae.entities.EpochDays;
+import ds.gae.view.ViewTools;
+
+/**
+ * Returns, as JSON, the number of free cars of a car type on every day of a period:
+ * <code>GET /availability?crc=Hertz&amp;carType=Compact&amp;from=01.01.2012&amp;days=90</code>
+ * gives <code>{"from":"01.01.2012","days":90,"freeCars":[3,3,2,...]}</code>.
+ * The period starts today and spans 90 days unless given otherwise.
+ *
+ * Responses carry the version of the calendar as their ETag. Clients may keep them,
+ * but must revalidate them, as every confirmation or cancellation starts a new version.
+ */
+@SuppressWarnings("serial")
+public class AvailabilityServlet extends HttpServlet {
+
+	private static final int DEFAULT_DAYS = 90;
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		String crc = req.getParameter("crc");
+		String carType = req.getParameter("carType");
+		if (crc == null || carType == null) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameters crc and carType are required");
+			return;
+		}
+		// DATE_FORMAT is shared, and formats are not thread-safe
+		DateFormat format = (DateFormat) ViewTools.DATE_FORMAT.clone();
+		Date from;
+		AvailabilityCalendar calendar;
+		try {
+			from = req.getParameter("from") == null ? new Date() : format.parse(req.getParameter("from"));
+			int days = req.getParameter("days") == null ? DEFAULT_DAYS : Integer.parseInt(req.getParameter("days"));
+			calendar = CarRentalModel.get().getAvailabilityCalendar(crc, carType, EpochDays.of(from), days);
+		} catch (ParseException | IllegalArgumentException e) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, ViewTools.encodeHTML(e.getMessage()));
+			return;
+		}
+
+		String etag = "\"" + Long.toHexString(calendar.getVersion()) + "\"";
+		resp.setHeader("ETag", etag);
+		resp.setHeader("Cache-Control", "private, no-cache");
+		if (etag.equals(req.getHeader("If-None-Match"))) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		resp.setContentType("application/json");
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter out = resp.getWriter();
+		out.print("{\"from\":\"" + format.format(from) + "\"");
+		out.print(",\"days\":" + calendar.getNbOfDays() + ",\"freeCars\":[");
+		for (int i = 0; i < calendar.getNbOfDays(); i++) {
+			if (i > 0)
+				out.print(',');
+			out.print(calendar.getFreeCars(calendar.getFromDay() + i));
+		}
+		out.println("]}");
+	}
+}
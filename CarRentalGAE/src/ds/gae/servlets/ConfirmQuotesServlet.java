@@ -1,50 +1,61 @@
-package ds.gae.servlets;
-
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
-
-import ds.gae.CarRentalModel;
-import ds.gae.ReservationException;
-import ds.gae.entities.Quote;
-import ds.gae.view.ViewTools;
-import ds.gae.view.JSPSite;
-
-@SuppressWarnings("serial")
-public class ConfirmQuotesServlet extends HttpServlet {
-	
-	@SuppressWarnings("unchecked")
-	@Override
-	protected void doPost(HttpServletRequest req, HttpServletResponse resp)
-			throws ServletException, IOException {
-		
-		HttpSession session = req.getSession();
-		HashMap<String, ArrayList<Quote>> allQuotes = (HashMap<String, ArrayList<Quote>>) session.getAttribute("quotes");
-
-		try {
-			ArrayList<Quote> qs = new ArrayList<Quote>();
-			
-			for (String crcName : allQuotes.keySet()) {
-				qs.addAll(allQuotes.get(crcName));
-			}
-			CarRentalModel.get().confirmQuotes(qs);
-			
-			session.setAttribute("quotes", new HashMap<String, ArrayList<Quote>>());
-			
-			// TODO
-			// If you wish confirmQuotesReply.jsp to be shown to the client as
-			// a response of calling this servlet, please replace the following line 
-			// with resp.sendRedirect(JSPSite.CONFIRM_QUOTES_RESPONSE.url());
-			resp.sendRedirect(JSPSite.CREATE_QUOTES.url());
-		} catch (ReservationException e) {
-			session.setAttribute("errorMsg", ViewTools.encodeHTML(e.getMessage()));
-			resp.sendRedirect(JSPSite.RESERVATION_ERROR.url());				
-		}
-	}
-}
+package ds.gae.servlets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import ds.gae.CarRentalModel;
+import ds.gae.QuoteCart;
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.Quote;
+import ds.gae.view.JSPSite;
+
+@SuppressWarnings("serial")
+public class ConfirmQuotesServlet extends HttpServlet {
+	
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		
+		HttpSession session = req.getSession();
+		QuoteCart allQuotes = (QuoteCart) session.getAttribute("quotes");
+		String renter = (String) session.getAttribute("renter");
+
+		List<Quote> qs = new ArrayList<Quote>();
+		if (allQuotes != null) {
+			qs.addAll(allQuotes.getQuotes());
+		}
+		
+		// the quotes are confirmed in the background, the reply page shows the outcome
+		CarRentalModel.get().confirmQuotesAsync(renter, qs);
+		
+		session.removeAttribute("quotes");
+		resp.sendRedirect(JSPSite.CONFIRM_QUOTES_RESPONSE.url());
+	}
+	
+	/**
+	 * Poll the outcome of the confirmation with the id given as parameter.
+	 */
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		String id = req.getParameter("id");
+		Confirmation confirmation = (id == null) ? null : CarRentalModel.get().getConfirmation(id);
+		if (confirmation == null) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No confirmation with id " + id);
+			return;
+		}
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding("UTF-8");
+		resp.getWriter().println(confirmation.getStatus());
+		if (confirmation.getMessage() != null) {
+			resp.getWriter().println(confirmation.getMessage());
+		}
+	}
+}
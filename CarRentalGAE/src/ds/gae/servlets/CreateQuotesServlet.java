@@ -0,0 +1,95 @@
+package ds.gae.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import ds.gae.CarRentalModel;
+import ds.gae.QuoteCart;
+import ds.gae.QuoteResult;
+import ds.gae.entities.ReservationConstraints;
+import ds.gae.view.ViewTools;
+
+/**
+ * Creates several quotes in one request, for car renters that book in bulk.
+ *
+ * The parameters are those of {@link CreateQuoteServlet}, repeated once per quote:
+ * the i-th values of crc, carType, startDate and endDate make up the i-th quote.
+ * The quotes that could be made are added to the quotes of the session, to be
+ * confirmed later. The response lists, as JSON and in the same order, the price
+ * of every quote or the reason why it could not be made:
+ * <code>[{"crc":"Hertz","carType":"Compact","price":150.0},{"crc":"Dockx","carType":"Van","failure":"..."}]</code>.
+ */
+@SuppressWarnings("serial")
+public class CreateQuotesServlet extends HttpServlet {
+
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		String renter = (String) req.getSession().getAttribute("renter");
+		if (renter == null) {
+			resp.sendError(HttpServletResponse.SC_FORBIDDEN, "Not logged in");
+			return;
+		}
+		String[] crcs = req.getParameterValues("crc");
+		String[] carTypes = req.getParameterValues("carType");
+		String[] startDates = req.getParameterValues("startDate");
+		String[] endDates = req.getParameterValues("endDate");
+		if (crcs == null || carTypes == null || startDates == null || endDates == null
+				|| carTypes.length != crcs.length || startDates.length != crcs.length || endDates.length != crcs.length) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Every quote needs a crc, carType, startDate and endDate");
+			return;
+		}
+
+		// DATE_FORMAT is shared, and formats are not thread-safe
+		DateFormat format = (DateFormat) ViewTools.DATE_FORMAT.clone();
+		List<ReservationConstraints> constraints = new ArrayList<ReservationConstraints>();
+		try {
+			for (int i = 0; i < crcs.length; i++) {
+				constraints.add(new ReservationConstraints(format.parse(startDates[i]), format.parse(endDates[i]), carTypes[i], crcs[i]));
+			}
+		} catch (ParseException pe) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, ViewTools.encodeHTML(pe.getMessage()));
+			return;
+		}
+
+		List<QuoteResult> results = CarRentalModel.get().createQuotes(constraints, renter);
+
+		QuoteCart quotes = (QuoteCart) req.getSession().getAttribute("quotes");
+		if (quotes == null) {
+			quotes = new QuoteCart();
+		}
+		for (QuoteResult result : results) {
+			if (result.isQuoted()) {
+				quotes.add(result.getQuote());
+			}
+		}
+		req.getSession().setAttribute("quotes", quotes);
+
+		resp.setContentType("application/json");
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter out = resp.getWriter();
+		out.print('[');
+		for (int i = 0; i < results.size(); i++) {
+			QuoteResult result = results.get(i);
+			if (i > 0) {
+				out.print(',');
+			}
+			out.print("{\"crc\":" + ViewTools.encodeJSON(crcs[i]) + ",\"carType\":" + ViewTools.encodeJSON(carTypes[i]));
+			if (result.isQuoted()) {
+				out.print(",\"price\":" + result.getQuote().getRentalPrice() + "}");
+			} else {
+				out.print(",\"failure\":" + ViewTools.encodeJSON(String.valueOf(result.getFailure())) + "}");
+			}
+		}
+		out.println(']');
+	}
+}
@@ -0,0 +1,42 @@
+package ds.gae.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import ds.gae.CarRentalModel;
+import ds.gae.metrics.Metrics;
+
+/**
+ * Exposes the metrics of this instance in the Prometheus text format.
+ */
+@SuppressWarnings("serial")
+public class MetricsServlet extends HttpServlet {
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		resp.setContentType("text/plain; version=0.0.4");
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter out = resp.getWriter();
+		Metrics.get().write(out);
+		writeCarTypeCounters(out, "carrental_cartype_lock_contention_total", CarRentalModel.get().getCarTypeContention());
+		writeCarTypeCounters(out, "carrental_cartype_conflicts_total", CarRentalModel.get().getCarTypeConflicts());
+	}
+
+	// the counters are kept per "company/car type"
+	private static void writeCarTypeCounters(PrintWriter out, String name, Map<String, Long> counters) {
+		boolean first = true;
+		for (Map.Entry<String, Long> entry : counters.entrySet()) {
+			int slash = entry.getKey().indexOf('/');
+			Metrics.writeCounter(out, first, name, entry.getValue(), 
+					"company", entry.getKey().substring(0, slash), "car_type", entry.getKey().substring(slash + 1));
+			first = false;
+		}
+	}
+}
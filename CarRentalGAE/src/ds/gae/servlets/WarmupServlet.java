@@ -0,0 +1,27 @@
+package ds.gae.servlets;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import ds.gae.Startup;
+
+/**
+ * Handles the warmup requests that App Engine sends to a new instance before it 
+ * receives traffic, by preparing the instance.
+ */
+@SuppressWarnings("serial")
+public class WarmupServlet extends HttpServlet {
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+			throws ServletException, IOException {
+		long start = System.currentTimeMillis();
+		Startup.get().ensureReady();
+		resp.setContentType("text/plain");
+		resp.getWriter().println("Ready, warmup request took " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,130 @@
+package ds.gae.storage;
+
+import java.util.List;
+
+import ds.gae.ReservationException;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.Quote;
+import ds.gae.entities.Reservation;
+
+/**
+ * Storage of the car rental companies, with their car types, cars and reservations,
+ * and of the confirmations of the car renters.
+ *
+ * Companies are only handed out to a {@link CompanyReader} for the duration of a read,
+ * and only changed through {@link #confirmQuotes(String, List)},
+ * {@link #cancelReservations(String, List)} and {@link #archiveReservations(String, int, int)},
+ * each of which is atomic for one company.
+ */
+public interface CarRentalRepository {
+
+    /**
+     * Reads a car rental company. The company must not be changed, and the entities
+     * of the company must not be used after the read, except for their simple fields.
+     */
+    interface CompanyReader<T, E extends Exception> {
+
+        /**
+         * @param   company
+         *          the car rental company, or null if there is no company with the requested name
+         */
+        T read(CarRentalCompany company) throws E;
+    }
+
+    /*************
+     * COMPANIES *
+     *************/
+
+    List<String> getCompanyNames();
+
+    boolean hasCompany(String name);
+
+    /**
+     * Store the given new car rental company, with its car types, cars and reservations.
+     */
+    void addCompany(CarRentalCompany company);
+
+    /**
+     * Add the given car type, without cars, to the given company, unless the company
+     * already has a car type with the same name.
+     */
+    void addCarType(String company, CarType carType);
+
+    /**
+     * Add the given number of new cars of the given car type to the given company, all or none.
+     */
+    void addCars(String company, String carType, int nbOfCars);
+
+    /**
+     * Give the cars of the given company that were stored without a number a number,
+     * see {@link CarRentalCompany#registerCars()}.
+     *
+     * @return  The number of cars that were given a number.
+     */
+    int registerCars(String company);
+
+    <T, E extends Exception> T readCompany(String name, CompanyReader<T, E> reader) throws E;
+
+    /****************
+     * RESERVATIONS *
+     ****************/
+
+    /**
+     * Confirm the given quotes of a single car rental company, all or none. The
+     * reservations are stored with the given confirmation id, which may be null.
+     *
+     * @throws  ReservationException
+     *          The company does not exist or one of the quotes cannot be confirmed.
+     */
+    List<Reservation> confirmQuotes(String company, List<Quote> quotes, String confirmationId) throws ReservationException;
+
+    /**
+     * Cancel the given reservations of a single car rental company, all or none.
+     */
+    void cancelReservations(String company, List<Reservation> reservations);
+
+    /**
+     * Move at most max reservations of the given company that end on or before the
+     * given epoch day out of the reservations of their cars, into the archive.
+     *
+     * @return  The number of archived reservations.
+     */
+    int archiveReservations(String company, int horizonDay, int max);
+
+    /**
+     * Get the reservations of the given car renter, archived ones included.
+     */
+    List<Reservation> getReservations(String renter);
+
+    boolean hasReservations(String renter);
+
+    /*****************
+     * CONFIRMATIONS *
+     *****************/
+
+    void addConfirmation(Confirmation confirmation);
+
+    /**
+     * @return  the confirmation, or null if there is no confirmation with the given id
+     */
+    Confirmation getConfirmation(String id);
+
+    List<Confirmation> getConfirmations(String renter);
+
+    /**
+     * Atomically claim the confirmation with the given id, see {@link Confirmation#claim(long)},
+     * so only one delivery of its task books the quotes at a time.
+     *
+     * @return  the claimed confirmation, or null if there is no such confirmation or
+     *          it is not claimable under the given lease, see {@link Confirmation#isClaimable(long, long)}
+     */
+    Confirmation claimConfirmation(String id, long leaseMillis);
+
+    /**
+     * @throws  IllegalArgumentException
+     *          There is no confirmation with the given id.
+     */
+    void updateConfirmation(String id, Confirmation.Status status, String message);
+}
@@ -0,0 +1,307 @@
+package ds.gae.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+import ds.gae.ReservationException;
+import ds.gae.entities.Car;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.Quote;
+import ds.gae.entities.Reservation;
+
+/**
+ * Repository that keeps everything in the memory of the current process, for
+ * benchmarks, tests and deployments on a single node.
+ *
+ * Every company has a read-write lock: reads of a company run in parallel, while
+ * confirmations and cancellations of the same company are serialized. Readers do 
+ * build the derived state of the entities they read (the fleet index of a company,
+ * the capacity calendar of a car type and the reservation index of a car), but 
+ * only from state that the read lock keeps stable, and queries of that state never
+ * write to it. Each is built completely before it is published through a volatile
+ * field, so parallel readers at worst build the same state twice. Reservations
+ * and confirmations are indexed per car renter; archived reservations are only
+ * removed from their cars, the index per renter is their archive. Ids are drawn
+ * from a counter.
+ */
+public class InMemoryCarRentalRepository implements CarRentalRepository {
+
+    private final ConcurrentMap<String, StoredCompany> companies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Reservation>> reservationsByRenter = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Confirmation> confirmations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> confirmationsByRenter = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /*************
+     * COMPANIES *
+     *************/
+
+    @Override
+    public List<String> getCompanyNames() {
+        return new ArrayList<>(companies.keySet());
+    }
+
+    @Override
+    public boolean hasCompany(String name) {
+        return companies.containsKey(name);
+    }
+
+    @Override
+    public void addCompany(CarRentalCompany company) {
+        StoredCompany stored = new StoredCompany(company);
+        stored.lock.writeLock().lock();
+        try {
+            if (companies.putIfAbsent(company.getName(), stored) != null)
+                throw new IllegalStateException("CarRentalCompany '" + company.getName() + "' already exists.");
+            for (CarType type : company.getCarTypes()) {
+                if (type.getId() == null)
+                    type.setId(createKey("CarType"));
+                for (Car car : type.getCars()) {
+                    if (car.getId() == null)
+                        car.setId(createKey("Car"));
+                    for (Reservation reservation : car.getReservations())
+                        added(reservation);
+                }
+            }
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addCarType(String company, CarType carType) {
+        StoredCompany stored = getCompany(company);
+        stored.lock.writeLock().lock();
+        try {
+            if (carType.getId() == null)
+                carType.setId(createKey("CarType"));
+            stored.company.addCarType(carType);
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addCars(String company, String carType, int nbOfCars) {
+        StoredCompany stored = getCompany(company);
+        stored.lock.writeLock().lock();
+        try {
+            for (int i = 0; i < nbOfCars; i++) {
+                Car car = new Car();
+                car.setId(createKey("Car"));
+                stored.company.addCar(carType, car);
+            }
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int registerCars(String company) {
+        StoredCompany stored = getCompany(company);
+        stored.lock.writeLock().lock();
+        try {
+            return stored.company.registerCars();
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    private StoredCompany getCompany(String company) {
+        StoredCompany stored = companies.get(company);
+        if (stored == null)
+            throw new IllegalArgumentException("CarRentalCompany '" + company + "' not found.");
+        return stored;
+    }
+
+    /**
+     * Run the given reader under the read lock of the company. The reader must not
+     * change the company, see the class comment for its derived state.
+     */
+    @Override
+    public <T, E extends Exception> T readCompany(String name, CompanyReader<T, E> reader) throws E {
+        StoredCompany stored = companies.get(name);
+        if (stored == null)
+            return reader.read(null);
+        stored.lock.readLock().lock();
+        try {
+            return reader.read(stored.company);
+        } finally {
+            stored.lock.readLock().unlock();
+        }
+    }
+
+    /****************
+     * RESERVATIONS *
+     ****************/
+
+    @Override
+    public List<Reservation> confirmQuotes(String company, List<Quote> quotes, String confirmationId) throws ReservationException {
+        StoredCompany stored = companies.get(company);
+        if (stored == null)
+            throw new ReservationException("CarRentalCompany '" + company + "' not found.");
+        stored.lock.writeLock().lock();
+        try {
+            List<Reservation> reservations = new ArrayList<>();
+            try {
+                for (Quote quote : quotes)
+                    reservations.add(stored.company.confirmQuote(quote));
+            } catch (ReservationException | RuntimeException e) {
+                // there is no transaction to roll back, undo the reservations that were made
+                for (Reservation reservation : reservations)
+                    stored.company.cancelReservation(reservation);
+                throw e;
+            }
+            for (Reservation reservation : reservations) {
+                reservation.setId(createKey("Reservation"));
+                reservation.setConfirmationId(confirmationId);
+                added(reservation);
+            }
+            return reservations;
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void cancelReservations(String company, List<Reservation> reservations) {
+        StoredCompany stored = getCompany(company);
+        stored.lock.writeLock().lock();
+        try {
+            for (Reservation reservation : reservations)
+                stored.company.cancelReservation(reservation);
+            for (Reservation reservation : reservations) {
+                Set<Reservation> renterReservations = reservationsByRenter.get(reservation.getCarRenter());
+                if (renterReservations != null)
+                    renterReservations.remove(reservation);
+            }
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int archiveReservations(String company, int horizonDay, int max) {
+        StoredCompany stored = getCompany(company);
+        stored.lock.writeLock().lock();
+        try {
+            // the index per renter keeps the archived reservations
+            return stored.company.removeReservationsEndingBy(horizonDay, max).size();
+        } finally {
+            stored.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Reservation> getReservations(String renter) {
+        Set<Reservation> renterReservations = reservationsByRenter.get(renter);
+        return (renterReservations == null) ? new ArrayList<Reservation>() : new ArrayList<>(renterReservations);
+    }
+
+    @Override
+    public boolean hasReservations(String renter) {
+        Set<Reservation> renterReservations = reservationsByRenter.get(renter);
+        return renterReservations != null && !renterReservations.isEmpty();
+    }
+
+    private void added(Reservation reservation) {
+        renterSet(reservationsByRenter, reservation.getCarRenter()).add(reservation);
+    }
+
+    /*****************
+     * CONFIRMATIONS *
+     *****************/
+
+    @Override
+    public void addConfirmation(Confirmation confirmation) {
+        if (confirmations.putIfAbsent(confirmation.getId(), confirmation) != null)
+            throw new IllegalStateException("Confirmation '" + confirmation.getId() + "' already exists.");
+        renterSet(confirmationsByRenter, confirmation.getCarRenter()).add(confirmation.getId());
+    }
+
+    @Override
+    public Confirmation getConfirmation(String id) {
+        return confirmations.get(id);
+    }
+
+    @Override
+    public List<Confirmation> getConfirmations(String renter) {
+        List<Confirmation> out = new ArrayList<>();
+        Set<String> ids = confirmationsByRenter.get(renter);
+        if (ids != null) {
+            for (String id : ids)
+                out.add(confirmations.get(id));
+        }
+        return out;
+    }
+
+    @Override
+    public Confirmation claimConfirmation(String id, long leaseMillis) {
+        Confirmation confirmation = confirmations.get(id);
+        if (confirmation == null)
+            return null;
+        synchronized (confirmation) {
+            long now = System.currentTimeMillis();
+            if (!confirmation.isClaimable(now, leaseMillis))
+                return null;
+            confirmation.claim(now);
+        }
+        confirmations.put(id, confirmation);
+        return confirmation;
+    }
+
+    @Override
+    public void updateConfirmation(String id, Confirmation.Status status, String message) {
+        Confirmation confirmation = confirmations.get(id);
+        if (confirmation == null)
+            throw new IllegalArgumentException("Confirmation '" + id + "' not found.");
+        synchronized (confirmation) {
+            confirmation.setStatus(status);
+            confirmation.setMessage(message);
+        }
+        // publishes the new state to threads that look the confirmation up afterwards
+        confirmations.put(id, confirmation);
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private Key createKey(String kind) {
+        LocalEnvironment.install();
+        return KeyFactory.createKey(kind, nextId.getAndIncrement());
+    }
+
+    private static <V> Set<V> renterSet(ConcurrentMap<String, Set<V>> index, String renter) {
+        Set<V> set = index.get(renter);
+        if (set == null) {
+            Set<V> created = Collections.newSetFromMap(new ConcurrentHashMap<V, Boolean>());
+            set = index.putIfAbsent(renter, created);
+            if (set == null)
+                set = created;
+        }
+        return set;
+    }
+
+    private static class StoredCompany {
+
+        private final CarRentalCompany company;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private StoredCompany(CarRentalCompany company) {
+            this.company = company;
+        }
+    }
+}
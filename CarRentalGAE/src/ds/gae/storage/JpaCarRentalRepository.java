@@ -0,0 +1,397 @@
+package ds.gae.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+
+import ds.gae.EMF;
+import ds.gae.ReservationException;
+import ds.gae.entities.ArchivedReservation;
+import ds.gae.entities.Car;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.Quote;
+import ds.gae.entities.Reservation;
+
+/**
+ * Repository on the App Engine datastore, through JPA.
+ *
+ * Within a request the entity manager of that request is used (see {@link EMF#current()}),
+ * outside of a request every operation uses its own entity manager.
+ *
+ * Queries are the named queries declared on the entities, so every query has one
+ * fixed string whose compilation DataNucleus caches across entity managers.
+ */
+public class JpaCarRentalRepository implements CarRentalRepository {
+
+    /**
+     * Get the entity manager of the current request, or a new one outside of a request.
+     * Every entity manager obtained here must be released with {@link #closeEntityManager(EntityManager)}.
+     */
+    private EntityManager openEntityManager() {
+        EntityManager em = EMF.current();
+        return (em != null) ? em : EMF.get().createEntityManager();
+    }
+
+    private void closeEntityManager(EntityManager em) {
+        // the entity manager of a request is closed at the end of that request
+        if (!EMF.isCurrent(em))
+            em.close();
+    }
+
+    private void rollbackIfActive(EntityManager em, EntityTransaction transaction) {
+        if (transaction.isActive()) {
+            transaction.rollback();
+            // entities changed by the failed transaction must not be reused later in the request
+            em.clear();
+        }
+    }
+
+    /*************
+     * COMPANIES *
+     *************/
+
+    @Override
+    public List<String> getCompanyNames() {
+        EntityManager em = openEntityManager();
+        try {
+            TypedQuery<String> query = em.createNamedQuery(CarRentalCompany.NAMES, String.class);
+            return new ArrayList<>(query.getResultList());
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public boolean hasCompany(String name) {
+        EntityManager em = openEntityManager();
+        try {
+            return em.find(CarRentalCompany.class, name) != null;
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public void addCompany(CarRentalCompany company) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            em.persist(company);
+            transaction.commit();
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public void addCarType(String company, CarType carType) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            findCompany(em, company).addCarType(carType);
+            transaction.commit();
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    /**
+     * Adds the cars through the datastore API, so the cars the car type already has
+     * are not loaded: through JPA, adding to the cars of a car type loads all of them.
+     * The cars are stored as child entities of the car type, and their keys are appended
+     * to the keys of its cars that the car type entity stores, which is how DataNucleus
+     * stores the owned relation (storage version READ_OWNED_CHILD_KEYS_FROM_PARENTS,
+     * the default). The company entity keeps the count of car numbers.
+     *
+     * All cars are in the entity group of their company, so the datastore serializes
+     * the additions to a company, at about one transaction per second.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addCars(String company, String carType, int nbOfCars) {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        Transaction transaction = datastore.beginTransaction();
+        try {
+            Entity crc;
+            try {
+                crc = datastore.get(transaction, KeyFactory.createKey(CarRentalCompany.class.getSimpleName(), company));
+            } catch (EntityNotFoundException e) {
+                throw new IllegalArgumentException("CarRentalCompany '" + company + "' not found.");
+            }
+            Query query = new Query(CarType.class.getSimpleName(), crc.getKey())
+                    .setFilter(new Query.FilterPredicate("name", Query.FilterOperator.EQUAL, carType));
+            Entity type = datastore.prepare(transaction, query).asSingleEntity();
+            if (type == null)
+                throw new IllegalArgumentException("CarType '" + carType + "' not found in '" + company + "'.");
+
+            long nbOfCarNumbers = ((Number) crc.getProperty("nbOfCarNumbers")).longValue();
+            List<Entity> cars = new ArrayList<>();
+            for (int i = 0; i < nbOfCars; i++) {
+                Entity car = new Entity(Car.class.getSimpleName(), type.getKey());
+                car.setProperty("number", nbOfCarNumbers++);
+                cars.add(car);
+            }
+            List<Key> keys = new ArrayList<>();
+            Collection<Key> existing = (Collection<Key>) type.getProperty("cars");
+            if (existing != null)
+                keys.addAll(existing);
+            keys.addAll(datastore.put(transaction, cars));
+            type.setProperty("cars", keys);
+            crc.setProperty("nbOfCarNumbers", nbOfCarNumbers);
+            datastore.put(transaction, Arrays.asList(crc, type));
+            transaction.commit();
+        } finally {
+            if (transaction.isActive())
+                transaction.rollback();
+        }
+    }
+
+    @Override
+    public int registerCars(String company) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            int registered = findCompany(em, company).registerCars();
+            transaction.commit();
+            return registered;
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    private CarRentalCompany findCompany(EntityManager em, String company) {
+        CarRentalCompany crc = em.find(CarRentalCompany.class, company);
+        if (crc == null)
+            throw new IllegalArgumentException("CarRentalCompany '" + company + "' not found.");
+        return crc;
+    }
+
+    @Override
+    public <T, E extends Exception> T readCompany(String name, CompanyReader<T, E> reader) throws E {
+        EntityManager em = openEntityManager();
+        try {
+            // the car types and cars are loaded as the reader navigates to them
+            return reader.read(em.find(CarRentalCompany.class, name));
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    /****************
+     * RESERVATIONS *
+     ****************/
+
+    @Override
+    public List<Reservation> confirmQuotes(String company, List<Quote> quotes, String confirmationId) throws ReservationException {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            CarRentalCompany crc = em.find(CarRentalCompany.class, company);
+            if (crc == null)
+                throw new ReservationException("CarRentalCompany '" + company + "' not found.");
+            List<Reservation> reservations = new ArrayList<>();
+            for (Quote quote : quotes) {
+                Reservation reservation = crc.confirmQuote(quote);
+                reservation.setConfirmationId(confirmationId);
+                reservations.add(reservation);
+            }
+            transaction.commit();
+            return reservations;
+        } catch (PersistenceException e) {
+            // a failed commit leaves stale entities behind
+            em.clear();
+            throw e;
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public void cancelReservations(String company, List<Reservation> reservations) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            CarRentalCompany crc = em.find(CarRentalCompany.class, company);
+            for (Reservation reservation : reservations)
+                crc.cancelReservation(reservation);
+            transaction.commit();
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public int archiveReservations(String company, int horizonDay, int max) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            List<Reservation> ended = findCompany(em, company).removeReservationsEndingBy(horizonDay, max);
+            // archived reservations are in entity groups of their own, so they are stored
+            // outside of the transaction, before the reservations are removed: a failed
+            // commit leaves archived copies of live reservations, which are overwritten
+            // when archiving again and skipped by getReservations
+            EntityManager archive = EMF.get().createEntityManager();
+            try {
+                for (Reservation reservation : ended)
+                    archive.merge(new ArchivedReservation(reservation));
+            } finally {
+                archive.close();
+            }
+            transaction.commit();
+            return ended.size();
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public List<Reservation> getReservations(String renter) {
+        EntityManager em = openEntityManager();
+        try {
+            TypedQuery<Reservation> query = em.createNamedQuery(Reservation.BY_RENTER, Reservation.class);
+            query.setParameter("renter", renter);
+            List<Reservation> out = new ArrayList<>(query.getResultList());
+
+            Set<Key> live = new HashSet<>();
+            for (Reservation reservation : out)
+                live.add(reservation.getId());
+            TypedQuery<ArchivedReservation> archived = em.createNamedQuery(ArchivedReservation.BY_RENTER, ArchivedReservation.class);
+            archived.setParameter("renter", renter);
+            for (ArchivedReservation reservation : archived.getResultList()) {
+                if (!live.contains(reservation.getReservationId()))
+                    out.add(reservation.toReservation());
+            }
+            return out;
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public boolean hasReservations(String renter) {
+        EntityManager em = openEntityManager();
+        try {
+            // only fetch the key of a single reservation
+            TypedQuery<Key> query = em.createNamedQuery(Reservation.IDS_BY_RENTER, Key.class);
+            query.setParameter("renter", renter);
+            query.setMaxResults(1);
+            if (!query.getResultList().isEmpty())
+                return true;
+            TypedQuery<String> archived = em.createNamedQuery(ArchivedReservation.IDS_BY_RENTER, String.class);
+            archived.setParameter("renter", renter);
+            archived.setMaxResults(1);
+            return !archived.getResultList().isEmpty();
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    /*****************
+     * CONFIRMATIONS *
+     *****************/
+
+    @Override
+    public void addConfirmation(Confirmation confirmation) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            em.persist(confirmation);
+            transaction.commit();
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public Confirmation getConfirmation(String id) {
+        EntityManager em = openEntityManager();
+        try {
+            return em.find(Confirmation.class, id);
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public List<Confirmation> getConfirmations(String renter) {
+        EntityManager em = openEntityManager();
+        try {
+            TypedQuery<Confirmation> query = em.createNamedQuery(Confirmation.BY_RENTER, Confirmation.class);
+            query.setParameter("renter", renter);
+            return new ArrayList<>(query.getResultList());
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public Confirmation claimConfirmation(String id, long leaseMillis) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            Confirmation confirmation = em.find(Confirmation.class, id);
+            long now = System.currentTimeMillis();
+            if (confirmation == null || !confirmation.isClaimable(now, leaseMillis))
+                return null;
+            confirmation.claim(now);
+            // fails if another delivery claimed the confirmation since it was read
+            transaction.commit();
+            return confirmation;
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+
+    @Override
+    public void updateConfirmation(String id, Confirmation.Status status, String message) {
+        EntityManager em = openEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            Confirmation confirmation = em.find(Confirmation.class, id);
+            if (confirmation == null)
+                throw new IllegalArgumentException("Confirmation '" + id + "' not found.");
+            confirmation.setStatus(status);
+            confirmation.setMessage(message);
+            transaction.commit();
+        } finally {
+            rollbackIfActive(em, transaction);
+            closeEntityManager(em);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ds.gae.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.apphosting.api.ApiProxy;
+
+/**
+ * Minimal App Engine environment, so datastore keys can be created for 
+ * in-memory entities outside of App Engine.
+ */
+public class LocalEnvironment implements ApiProxy.Environment {
+
+    /**
+     * Install a local environment on the current thread, unless it already has one.
+     */
+    public static void install() {
+        if (ApiProxy.getCurrentEnvironment() == null)
+            ApiProxy.setEnvironmentForCurrentThread(new LocalEnvironment());
+    }
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @Override
+    public String getAppId() {
+        return "car-rental-local";
+    }
+
+    @Override
+    public String getModuleId() {
+        return "default";
+    }
+
+    @Override
+    public String getVersionId() {
+        return "1";
+    }
+
+    @Override
+    public String getEmail() {
+        return null;
+    }
+
+    @Override
+    public boolean isLoggedIn() {
+        return false;
+    }
+
+    @Override
+    public boolean isAdmin() {
+        return false;
+    }
+
+    @Override
+    public String getAuthDomain() {
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String getRequestNamespace() {
+        return "";
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public long getRemainingMillis() {
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,34 @@
+package ds.gae.storage;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the repository of the application.
+ *
+ * The backend is chosen with the system property <code>ds.gae.storage</code>:
+ * <code>jpa</code> (default) stores everything in the App Engine datastore;
+ * <code>memory</code> keeps everything in the memory of the current process,
+ * which allows running the application without App Engine.
+ */
+public final class Repositories {
+
+    public static final String BACKEND_PROPERTY = "ds.gae.storage";
+
+    private static final Logger logger = Logger.getLogger(Repositories.class.getName());
+
+    private Repositories() {}
+
+    public static CarRentalRepository create() {
+        String backend = System.getProperty(BACKEND_PROPERTY, "jpa");
+        CarRentalRepository repository;
+        if (backend.equals("memory"))
+            repository = new InMemoryCarRentalRepository();
+        else if (backend.equals("jpa"))
+            repository = new JpaCarRentalRepository();
+        else
+            throw new IllegalStateException("Unknown storage backend '" + backend + "'");
+        logger.log(Level.INFO, "Using storage backend {0}", backend);
+        return repository;
+    }
+}
@@ -0,0 +1,276 @@
+package ds.gae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ds.gae.entities.Car;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.EpochDays;
+import ds.gae.entities.Quote;
+import ds.gae.entities.Reservation;
+import ds.gae.entities.ReservationConstraints;
+import ds.gae.storage.CarRentalRepository.CompanyReader;
+import ds.gae.storage.InMemoryCarRentalRepository;
+import ds.gae.storage.LocalEnvironment;
+
+public class CarRentalModelTest {
+
+    // the caches and holds of the model are shared by all tests, so every test has companies of its own
+    private static final AtomicInteger nextCompany = new AtomicInteger();
+
+    private FailingRepository repository;
+    private CarRentalModel model;
+    private String hertz;
+    private String avis;
+
+    /**
+     * In-memory repository that cannot commit the confirmations of one company,
+     * and optionally cannot cancel reservations either.
+     */
+    private static class FailingRepository extends InMemoryCarRentalRepository {
+
+        private String failing;
+        private boolean failingCancellations;
+
+        @Override
+        public List<Reservation> confirmQuotes(String company, List<Quote> quotes, String confirmationId) throws ReservationException {
+            if (company.equals(failing))
+                throw new PersistenceException(new OptimisticLockException("Concurrent modification of " + company));
+            return super.confirmQuotes(company, quotes, confirmationId);
+        }
+
+        @Override
+        public void cancelReservations(String company, List<Reservation> reservations) {
+            if (failingCancellations)
+                throw new PersistenceException("Datastore unavailable");
+            super.cancelReservations(company, reservations);
+        }
+    }
+
+    @BeforeClass
+    public static void installEnvironment() {
+        LocalEnvironment.install();
+    }
+
+    @Before
+    public void setUp() {
+        repository = new FailingRepository();
+        model = new CarRentalModel(repository);
+        hertz = addCompany("hertz");
+        avis = addCompany("avis");
+    }
+
+    private String addCompany(String name) {
+        String company = name + nextCompany.incrementAndGet();
+        model.addRentalCompany(new CarRentalCompany(company, new HashSet<CarType>()));
+        model.addCarType(company, new CarType("Compact", 4, 1, 40, false));
+        model.addCars(company, "Compact", 2);
+        return company;
+    }
+
+    private Quote quote(String company, int startDay, int endDay) throws ReservationException {
+        return model.createQuote(company, "renter",
+                new ReservationConstraints(EpochDays.toDate(startDay), EpochDays.toDate(endDay), "Compact"));
+    }
+
+    private int nbOfReservations(String company) {
+        return repository.readCompany(company, new CompanyReader<Integer, RuntimeException>() {
+            @Override
+            public Integer read(CarRentalCompany crc) {
+                int total = 0;
+                for (Car car : crc.getCars())
+                    total += car.getReservations().size();
+                return total;
+            }
+        });
+    }
+
+    @Test
+    public void failedCompanyUndoesCommittedCompanies() throws ReservationException {
+        List<Quote> quotes = Arrays.asList(quote(hertz, 10, 12), quote(avis, 10, 12));
+        repository.failing = avis;
+        try {
+            model.confirmQuotes(quotes);
+            fail("Confirmed " + quotes);
+        } catch (PersistenceException e) {
+            // the datastore gave up on avis after its retries
+        }
+        assertEquals(0, nbOfReservations(hertz));
+        assertEquals(0, nbOfReservations(avis));
+        assertTrue(repository.getReservations("renter").isEmpty());
+    }
+
+    @Test
+    public void redeliveryAfterPartialFailureResumes() throws ReservationException {
+        List<Quote> quotes = Arrays.asList(quote(hertz, 10, 12), quote(avis, 10, 12));
+        Confirmation confirmation = new Confirmation("partial" + nextCompany.incrementAndGet(), "renter", quotes.size());
+        repository.addConfirmation(confirmation);
+        Task task = new Task(confirmation.getId(), quotes);
+
+        // hertz is booked, avis fails and hertz cannot be undone
+        repository.failing = avis;
+        repository.failingCancellations = true;
+        try {
+            task.run(model);
+            fail("Ran " + task);
+        } catch (PersistenceException e) {
+            assertEquals(1, e.getSuppressed().length);
+        }
+        assertEquals(Confirmation.Status.PENDING, repository.getConfirmation(confirmation.getId()).getStatus());
+        assertEquals(1, nbOfReservations(hertz));
+
+        // the next delivery takes hertz as booked
+        repository.failing = null;
+        repository.failingCancellations = false;
+        task.run(model);
+        assertEquals(Confirmation.Status.CONFIRMED, repository.getConfirmation(confirmation.getId()).getStatus());
+        assertEquals(1, nbOfReservations(hertz));
+        assertEquals(1, nbOfReservations(avis));
+        assertEquals(2, repository.getReservations("renter").size());
+    }
+
+    @Test
+    public void refusedRedeliveryUndoesEarlierDelivery() throws ReservationException {
+        List<Quote> quotes = Arrays.asList(quote(hertz, 10, 12), quote(avis, 10, 12));
+        Confirmation confirmation = new Confirmation("refused" + nextCompany.incrementAndGet(), "renter", quotes.size());
+        repository.addConfirmation(confirmation);
+        Task task = new Task(confirmation.getId(), quotes);
+
+        repository.failing = avis;
+        repository.failingCancellations = true;
+        try {
+            task.run(model);
+            fail("Ran " + task);
+        } catch (PersistenceException e) {
+            // hertz is left booked for the next delivery
+        }
+
+        // in the meantime, avis is booked out
+        repository.failing = null;
+        repository.failingCancellations = false;
+        Quote other = new Quote();
+        other.setCarRenter("other");
+        other.setRentalCompany(avis);
+        other.setCarType("Compact");
+        other.setStartDate(EpochDays.toDate(11));
+        other.setEndDate(EpochDays.toDate(13));
+        other.setRentalPrice(80);
+        repository.confirmQuotes(avis, Arrays.asList(other, other), null);
+        task.run(model);
+        assertEquals(Confirmation.Status.FAILED, repository.getConfirmation(confirmation.getId()).getStatus());
+        assertEquals(0, nbOfReservations(hertz));
+    }
+
+    @Test
+    public void claimIsLeased() {
+        Confirmation confirmation = new Confirmation("leased" + nextCompany.incrementAndGet(), "renter", 1);
+        repository.addConfirmation(confirmation);
+        assertEquals(1, repository.claimConfirmation(confirmation.getId(), 60000).getAttempts());
+        assertNull(repository.claimConfirmation(confirmation.getId(), 60000));
+        // the first delivery is taken to have died once its lease has expired
+        assertEquals(2, repository.claimConfirmation(confirmation.getId(), 0).getAttempts());
+        repository.updateConfirmation(confirmation.getId(), Confirmation.Status.CONFIRMED, null);
+        assertNull(repository.claimConfirmation(confirmation.getId(), 0));
+    }
+
+    @Test
+    public void claimedTaskIsRetried() {
+        Confirmation confirmation = new Confirmation("claimed" + nextCompany.incrementAndGet(), "renter", 1);
+        repository.addConfirmation(confirmation);
+        repository.claimConfirmation(confirmation.getId(), 60000);
+        try {
+            new Task(confirmation.getId(), Collections.<Quote>emptyList()).run(model);
+            fail("Ran a claimed task");
+        } catch (IllegalStateException e) {
+            assertEquals(Confirmation.Status.IN_PROGRESS, repository.getConfirmation(confirmation.getId()).getStatus());
+        }
+    }
+
+    private Quote bareQuote(String company, String renter, int startDay, int endDay) {
+        Quote quote = new Quote();
+        quote.setCarRenter(renter);
+        quote.setRentalCompany(company);
+        quote.setCarType("Compact");
+        quote.setStartDate(EpochDays.toDate(startDay));
+        quote.setEndDate(EpochDays.toDate(endDay));
+        quote.setRentalPrice(80);
+        return quote;
+    }
+
+    @Test
+    public void refusedQuoteUndoesQuotesOfSameCompany() {
+        // three quotes for two cars, booked without holds
+        List<Quote> quotes = Arrays.asList(bareQuote(hertz, "undone", 10, 12), 
+                bareQuote(hertz, "undone", 11, 13), bareQuote(hertz, "undone", 11, 12));
+        try {
+            repository.confirmQuotes(hertz, quotes, null);
+            fail("Confirmed " + quotes);
+        } catch (ReservationException e) {
+            // the third quote does not fit
+        }
+        assertEquals(0, nbOfReservations(hertz));
+        assertTrue(repository.getReservations("undone").isEmpty());
+    }
+
+    @Test
+    public void cancelledReservationsFreeTheirCars() throws ReservationException {
+        List<Reservation> reservations = repository.confirmQuotes(hertz, 
+                Arrays.asList(bareQuote(hertz, "cancelled", 10, 12), bareQuote(hertz, "cancelled", 10, 12)), null);
+        repository.cancelReservations(hertz, reservations.subList(0, 1));
+        assertEquals(1, nbOfReservations(hertz));
+        assertEquals(Arrays.asList(reservations.get(1)), repository.getReservations("cancelled"));
+        // the freed car can be booked again
+        repository.confirmQuotes(hertz, Arrays.asList(bareQuote(hertz, "cancelled", 11, 12)), null);
+        assertEquals(2, nbOfReservations(hertz));
+    }
+
+    @Test
+    public void failedConfirmationUndoesItsReservations() throws ReservationException {
+        List<Quote> quotes = Arrays.asList(bareQuote(hertz, "failed", 10, 12), bareQuote(avis, "failed", 10, 12));
+        repository.confirmQuotes(hertz, quotes.subList(0, 1), "failed");
+        repository.confirmQuotes(avis, Arrays.asList(bareQuote(avis, "other", 10, 12)), "other");
+        repository.addConfirmation(new Confirmation("failed", "failed", quotes.size()));
+        model.failConfirmation("failed", quotes, "Failed");
+        assertEquals(0, nbOfReservations(hertz));
+        // the reservations of other confirmations stay
+        assertEquals(1, nbOfReservations(avis));
+        Confirmation confirmation = model.getConfirmation("failed");
+        assertEquals(Confirmation.Status.FAILED, confirmation.getStatus());
+        assertEquals("Failed", confirmation.getMessage());
+    }
+
+    @Test
+    public void claimedConfirmationIsUpdated() {
+        Confirmation confirmation = new Confirmation("updated" + nextCompany.incrementAndGet(), "renter", 1);
+        repository.addConfirmation(confirmation);
+        assertEquals(Confirmation.Status.IN_PROGRESS, model.claimConfirmation(confirmation.getId()).getStatus());
+        assertNull(model.claimConfirmation(confirmation.getId()));
+        model.updateConfirmation(confirmation.getId(), Confirmation.Status.FAILED, "Refused");
+        assertTrue(model.getConfirmation(confirmation.getId()).isDone());
+        assertEquals("Refused", model.getConfirmation(confirmation.getId()).getMessage());
+        assertNull(model.claimConfirmation(confirmation.getId()));
+        assertNull(model.claimConfirmation("unknown"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownConfirmationIsNotUpdated() {
+        model.updateConfirmation("unknown", Confirmation.Status.CONFIRMED, null);
+    }
+}
@@ -0,0 +1,148 @@
+package ds.gae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import ds.gae.entities.EpochDays;
+import ds.gae.entities.Quote;
+
+public class QuoteCartTest {
+
+    private static Quote quote(String company, String carType, int startDay, int endDay, double price) {
+        Quote quote = new Quote();
+        quote.setCarRenter("renter");
+        quote.setRentalCompany(company);
+        quote.setCarType(carType);
+        quote.setStartDate(EpochDays.toDate(startDay));
+        quote.setEndDate(EpochDays.toDate(endDay));
+        quote.setRentalPrice(price);
+        return quote;
+    }
+
+    private static QuoteCart roundTrip(QuoteCart cart) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(cart);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (QuoteCart) in.readObject();
+        }
+    }
+
+    private static void assertQuote(Quote expected, Quote actual) {
+        assertEquals(expected.getCarRenter(), actual.getCarRenter());
+        assertEquals(expected.getRentalCompany(), actual.getRentalCompany());
+        assertEquals(expected.getCarType(), actual.getCarType());
+        assertEquals(expected.getStartDay(), actual.getStartDay());
+        assertEquals(expected.getEndDay(), actual.getEndDay());
+        assertEquals(expected.getRentalPrice(), actual.getRentalPrice(), 0);
+        assertEquals(expected.getHoldId(), actual.getHoldId());
+    }
+
+    @Test
+    public void roundTripKeepsQuotesAndHolds() throws Exception {
+        QuoteCart cart = new QuoteCart();
+        Quote first = quote("hertz", "Compact", 17000, 17003, 132.5);
+        first.setHoldId(UUID.randomUUID().toString());
+        Quote second = quote("dockx", "Compact", 17001, 17002, 60);
+        Quote third = quote("hertz", "Premium", -2, 5, 700);
+        cart.add(first);
+        cart.add(second);
+        cart.add(third);
+        QuoteCart copy = roundTrip(cart);
+        assertEquals(3, copy.size());
+        List<Quote> quotes = copy.getQuotes();
+        assertQuote(first, quotes.get(0));
+        assertQuote(second, quotes.get(1));
+        assertQuote(third, quotes.get(2));
+        assertTrue(quotes.get(0).hasHold());
+        assertFalse(quotes.get(1).hasHold());
+        List<Quote> hertz = copy.getQuotes("hertz");
+        assertEquals(2, hertz.size());
+        assertQuote(third, hertz.get(1));
+    }
+
+    @Test
+    public void emptyCartRoundTrips() throws Exception {
+        QuoteCart copy = roundTrip(new QuoteCart());
+        assertTrue(copy.isEmpty());
+        copy.add(quote("hertz", "Compact", 1, 2, 10));
+        assertEquals(1, copy.getQuotes("hertz").size());
+    }
+
+    private static QuoteCart readCart(int format) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeByte(format);
+            out.writeShort(3);
+            out.writeUTF("renter");
+            out.writeUTF("hertz");
+            out.writeUTF("Compact");
+            out.writeShort(2);
+            for (int i = 0; i < 2; i++) {
+                out.writeShort(0);
+                out.writeShort(1);
+                out.writeShort(2);
+                out.writeInt(17000 + i);
+                out.writeInt(17003 + i);
+                out.writeDouble(100 + i);
+                if (format == 2)
+                    out.writeLong(1234 + i);
+            }
+        }
+        QuoteCart cart = new QuoteCart();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            cart.readExternal(in);
+        }
+        return cart;
+    }
+
+    private static void assertReadWithoutHolds(QuoteCart cart) {
+        assertEquals(2, cart.size());
+        for (int i = 0; i < 2; i++) {
+            Quote expected = quote("hertz", "Compact", 17000 + i, 17003 + i, 100 + i);
+            Quote actual = cart.getQuotes().get(i);
+            assertQuote(expected, actual);
+            assertFalse(actual.hasHold());
+        }
+    }
+
+    /**
+     * Sessions stored before holds were introduced hold carts of format 1.
+     */
+    @Test
+    public void readsFormatWithoutHolds() throws Exception {
+        assertReadWithoutHolds(readCart(1));
+    }
+
+    /**
+     * Carts of format 2 have the ids of holds that were local to an instance, which are dropped.
+     */
+    @Test
+    public void readsFormatWithLocalHolds() throws Exception {
+        assertReadWithoutHolds(readCart(2));
+    }
+
+    @Test(expected = InvalidObjectException.class)
+    public void rejectsUnknownFormat() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeByte(9);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            new QuoteCart().readExternal(in);
+        }
+    }
+}
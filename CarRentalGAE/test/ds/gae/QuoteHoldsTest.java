@@ -0,0 +1,144 @@
+package ds.gae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.appengine.api.datastore.KeyFactory;
+
+import ds.gae.entities.Car;
+import ds.gae.entities.CarType;
+import ds.gae.entities.EpochDays;
+import ds.gae.entities.Quote;
+import ds.gae.entities.Reservation;
+import ds.gae.storage.LocalEnvironment;
+
+public class QuoteHoldsTest {
+
+    private QuoteHolds holds;
+    private CarType type;
+    private Car firstCar;
+
+    @BeforeClass
+    public static void installEnvironment() {
+        LocalEnvironment.install();
+    }
+
+    @Before
+    public void setUp() {
+        holds = new QuoteHolds(new QuoteHolds.LocalStore(), 900);
+        type = new CarType("Compact", 4, 1, 40, false);
+        firstCar = car(1);
+        type.addCar(firstCar);
+        type.addCar(car(2));
+    }
+
+    private static Car car(int id) {
+        Car car = new Car();
+        car.setId(KeyFactory.createKey("Car", id));
+        return car;
+    }
+
+    private static Quote quote(int startDay, int endDay) {
+        Quote quote = new Quote();
+        quote.setCarRenter("renter");
+        quote.setRentalCompany("hertz");
+        quote.setCarType("Compact");
+        quote.setStartDate(EpochDays.toDate(startDay));
+        quote.setEndDate(EpochDays.toDate(endDay));
+        quote.setRentalPrice(100);
+        return quote;
+    }
+
+    private void assertRefused(Quote quote) {
+        try {
+            holds.hold(quote, type);
+            fail("Held " + quote);
+        } catch (ReservationException e) {
+            assertFalse(quote.hasHold());
+        }
+    }
+
+    @Test
+    public void holdsTakeCarsUntilReleased() throws ReservationException {
+        Quote first = quote(10, 15);
+        Quote second = quote(12, 14);
+        holds.hold(first, type);
+        holds.hold(second, type);
+        assertTrue(holds.isHeld(first));
+        assertTrue(holds.isHeld(second));
+        assertNotEquals(first.getHoldId(), second.getHoldId());
+        assertRefused(quote(13, 20));
+        // the periods are half-open
+        holds.hold(quote(15, 20), type);
+
+        holds.release(Collections.singletonList(second));
+        assertNull(second.getHoldId());
+        holds.hold(quote(13, 14), type);
+    }
+
+    @Test
+    public void bookedAndHeldCarsAreCountedTogether() throws ReservationException {
+        Reservation reservation = new Reservation();
+        reservation.setCarRenter("other");
+        reservation.setRentalCompany("hertz");
+        reservation.setCarType("Compact");
+        reservation.setStartDate(EpochDays.toDate(12));
+        reservation.setEndDate(EpochDays.toDate(13));
+        reservation.setCarId(firstCar.getId());
+        type.addReservation(firstCar, reservation);
+
+        holds.hold(quote(10, 13), type);
+        // one car is booked and the other held on day 12
+        assertRefused(quote(12, 14));
+        holds.hold(quote(10, 12), type);
+        holds.hold(quote(13, 16), type);
+    }
+
+    @Test
+    public void expiredHoldsDoNotCount() throws Exception {
+        holds = new QuoteHolds(new QuoteHolds.LocalStore(), 0);
+        Quote first = quote(10, 15);
+        holds.hold(first, type);
+        holds.hold(quote(10, 15), type);
+        assertFalse(holds.isHeld(first));
+        holds.hold(quote(10, 15), type);
+    }
+
+    @Test
+    public void contentionIgnoresTheOwnHold() throws ReservationException {
+        Quote held = quote(10, 15);
+        holds.hold(held, type);
+        assertFalse(holds.isContended(held));
+        assertTrue(holds.isContended(quote(14, 16)));
+        assertFalse(holds.isContended(quote(15, 16)));
+        Quote other = quote(0, 5);
+        other.setRentalCompany("dockx");
+        assertFalse(holds.isContended(other));
+    }
+
+    @Test
+    public void holdsAreSharedThroughTheStore() throws ReservationException {
+        QuoteHolds.LocalStore store = new QuoteHolds.LocalStore();
+        QuoteHolds instance = new QuoteHolds(store, 900);
+        QuoteHolds otherInstance = new QuoteHolds(store, 900);
+        Quote first = quote(10, 15);
+        Quote second = quote(10, 15);
+        instance.hold(first, type);
+        otherInstance.hold(second, type);
+        assertTrue(otherInstance.isHeld(first));
+        otherInstance.release(Arrays.asList(first, second));
+        assertFalse(instance.isContended(quote(10, 15)));
+        assertEquals(null, first.getHoldId());
+    }
+}
@@ -0,0 +1,109 @@
+package ds.gae.entities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CapacityCalendarTest {
+
+    private static final int OFFSET = 1000;
+    private static final int DAYS = 600;
+
+    @Test
+    public void emptyCalendarHasNoBookings() {
+        assertEquals(0, new CapacityCalendar().max(10, 20));
+    }
+
+    @Test
+    public void periodsAreHalfOpen() {
+        CapacityCalendar calendar = new CapacityCalendar();
+        calendar.add(10, 15, 1);
+        calendar.add(15, 20, 1);
+        assertEquals(1, calendar.max(10, 20));
+        assertEquals(1, calendar.max(14, 16));
+        assertEquals(0, calendar.max(20, 30));
+        assertEquals(0, calendar.max(5, 10));
+        calendar.add(12, 13, 1);
+        assertEquals(2, calendar.max(0, 100));
+        assertEquals(1, calendar.max(13, 100));
+    }
+
+    @Test
+    public void windowGrowsInBothDirections() {
+        CapacityCalendar calendar = new CapacityCalendar();
+        calendar.add(500, 510, 1);
+        calendar.add(-300, -290, 2);
+        calendar.add(5000, 5001, 3);
+        assertEquals(1, calendar.max(505, 506));
+        assertEquals(2, calendar.max(-295, 0));
+        assertEquals(3, calendar.max(0, 10000));
+        assertEquals(0, calendar.max(510, 5000));
+    }
+
+    @Test
+    public void addAndRemoveAgreeWithBruteForce() {
+        Random random = new Random(7);
+        CapacityCalendar calendar = new CapacityCalendar();
+        int[] booked = new int[DAYS];
+        List<int[]> periods = new ArrayList<>();
+        for (int round = 0; round < 5000; round++) {
+            if (!periods.isEmpty() && random.nextInt(3) == 0) {
+                int[] period = periods.remove(random.nextInt(periods.size()));
+                calendar.add(period[0] + OFFSET, period[1] + OFFSET, -1);
+                for (int day = period[0]; day < period[1]; day++)
+                    booked[day]--;
+            } else {
+                int start = random.nextInt(DAYS - 30);
+                int[] period = {start, start + 1 + random.nextInt(30)};
+                periods.add(period);
+                calendar.add(period[0] + OFFSET, period[1] + OFFSET, 1);
+                for (int day = period[0]; day < period[1]; day++)
+                    booked[day]++;
+            }
+            int from = random.nextInt(DAYS - 1);
+            int to = from + 1 + random.nextInt(DAYS - from - 1);
+            assertEquals("max of [" + from + ", " + to + ")", bruteForceMax(booked, from, to),
+                    calendar.max(from + OFFSET, to + OFFSET));
+        }
+    }
+
+    /**
+     * Car types are queried by parallel readers, so a query must not write to the tree.
+     */
+    @Test
+    public void queriesDoNotWrite() throws Exception {
+        Random random = new Random(11);
+        CapacityCalendar calendar = new CapacityCalendar();
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(DAYS - 30);
+            calendar.add(start + OFFSET, start + 1 + random.nextInt(30) + OFFSET, 1);
+        }
+        int[] max = state(calendar, "max");
+        int[] lazy = state(calendar, "lazy");
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(DAYS + 100) - 50;
+            calendar.max(from + OFFSET, from + 1 + random.nextInt(40) + OFFSET);
+        }
+        assertArrayEquals(max, state(calendar, "max"));
+        assertArrayEquals(lazy, state(calendar, "lazy"));
+    }
+
+    private static int[] state(CapacityCalendar calendar, String name) throws Exception {
+        Field field = CapacityCalendar.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return ((int[]) field.get(calendar)).clone();
+    }
+
+    private static int bruteForceMax(int[] booked, int from, int to) {
+        int max = 0;
+        for (int day = from; day < to; day++)
+            max = Math.max(max, booked[day]);
+        return max;
+    }
+}
@@ -0,0 +1,79 @@
+package ds.gae.entities;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.appengine.api.datastore.KeyFactory;
+
+import ds.gae.storage.LocalEnvironment;
+
+public class CarAssignmentStrategyTest {
+
+    private CarType type;
+    private Car[] cars;
+
+    @BeforeClass
+    public static void installEnvironment() {
+        LocalEnvironment.install();
+    }
+
+    @Before
+    public void setUp() {
+        type = new CarType("Compact", 4, 1, 40, false);
+        cars = new Car[3];
+        for (int number = 0; number < cars.length; number++) {
+            Car car = new Car();
+            car.setId(KeyFactory.createKey("Car", number + 1));
+            car.setNumber(number);
+            type.addCar(car);
+            cars[number] = car;
+        }
+        // car 0 is free, car 1 has a gap [12, 20) and car 2 a gap [13, 16)
+        book(cars[1], 10, 12);
+        book(cars[1], 20, 22);
+        book(cars[2], 10, 13);
+        book(cars[2], 16, 30);
+    }
+
+    private void book(Car car, int startDay, int endDay) {
+        type.addReservation(car, ReservationIndexTest.reservation(startDay, endDay));
+    }
+
+    @Test
+    public void bestFitFillsTheSmallestGap() {
+        assertSame(cars[2], CarAssignmentStrategy.BEST_FIT.assign(type, 13, 16));
+        // car 2 is booked on day 12, a closed gap beats the open calendar of car 0
+        assertSame(cars[1], CarAssignmentStrategy.BEST_FIT.assign(type, 12, 14));
+        assertSame(cars[0], CarAssignmentStrategy.BEST_FIT.assign(type, 11, 14));
+    }
+
+    @Test
+    public void firstFitTakesTheLowestFreeCar() {
+        assertSame(cars[0], CarAssignmentStrategy.FIRST_FIT.assign(type, 13, 16));
+        book(cars[0], 13, 16);
+        assertSame(cars[1], CarAssignmentStrategy.FIRST_FIT.assign(type, 13, 16));
+    }
+
+    @Test
+    public void noFreeCar() {
+        book(cars[0], 10, 12);
+        assertNull(CarAssignmentStrategy.BEST_FIT.assign(type, 11, 12));
+        assertNull(CarAssignmentStrategy.FIRST_FIT.assign(type, 11, 12));
+    }
+
+    @Test
+    public void strategiesByName() {
+        assertSame(CarAssignmentStrategy.BEST_FIT, CarAssignmentStrategy.forName("bestFit"));
+        assertSame(CarAssignmentStrategy.FIRST_FIT, CarAssignmentStrategy.forName("firstFit"));
+        assertSame(CarAssignmentStrategy.RANDOM, CarAssignmentStrategy.forName("random"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStrategy() {
+        CarAssignmentStrategy.forName("worstFit");
+    }
+}
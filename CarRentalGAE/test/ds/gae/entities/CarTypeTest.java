@@ -0,0 +1,77 @@
+package ds.gae.entities;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.appengine.api.datastore.KeyFactory;
+
+import ds.gae.storage.LocalEnvironment;
+
+public class CarTypeTest {
+
+    private CarType type;
+    private Car first;
+    private Car second;
+
+    @BeforeClass
+    public static void installEnvironment() {
+        LocalEnvironment.install();
+    }
+
+    @Before
+    public void setUp() {
+        type = new CarType("Compact", 4, 1, 40, false);
+        first = car(1);
+        second = car(2);
+        type.addCar(first);
+        type.addCar(second);
+        type.addCar(car(3));
+    }
+
+    private static Car car(int id) {
+        Car car = new Car();
+        car.setId(KeyFactory.createKey("Car", id));
+        return car;
+    }
+
+    private void book(Car car, int startDay, int endDay) {
+        type.addReservation(car, ReservationIndexTest.reservation(startDay, endDay));
+    }
+
+    @Test
+    public void freeCarsWithoutReservations() {
+        assertArrayEquals(new int[]{3, 3, 3}, type.getFreeCarsPerDay(10, 3));
+    }
+
+    @Test
+    public void overlappingReservationsAddUp() {
+        book(first, 10, 14);
+        book(second, 12, 16);
+        assertArrayEquals(new int[]{3, 2, 2, 1, 1, 2, 2, 3}, type.getFreeCarsPerDay(9, 8));
+    }
+
+    @Test
+    public void adjacentReservationsDoNotOverlap() {
+        // the end day of a reservation is the first day the car is free again
+        book(first, 10, 12);
+        book(first, 12, 14);
+        book(second, 11, 12);
+        assertArrayEquals(new int[]{2, 1, 2, 2, 3}, type.getFreeCarsPerDay(10, 5));
+    }
+
+    @Test
+    public void reservationsOutsideThePeriodAreClipped() {
+        book(first, 5, 11);
+        book(second, 5, 10);
+        book(second, 14, 20);
+        assertArrayEquals(new int[]{2, 3, 3, 3}, type.getFreeCarsPerDay(10, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyPeriodIsRejected() {
+        type.getFreeCarsPerDay(10, 0);
+    }
+}
@@ -0,0 +1,52 @@
+package ds.gae.entities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class QuoteTest {
+
+    private static Quote quote(int startDay, int endDay) {
+        Quote quote = new Quote();
+        quote.setCarRenter("renter");
+        quote.setRentalCompany("company");
+        quote.setCarType("type");
+        quote.setStartDate(EpochDays.toDate(startDay));
+        quote.setEndDate(EpochDays.toDate(endDay));
+        quote.setRentalPrice(100);
+        return quote;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    @Test
+    public void daysAreRecomputedAfterDeserialization() throws Exception {
+        Quote quote = quote(17000, 17003);
+        // cached before serialization, but not serialized
+        assertEquals(17000, quote.getStartDay());
+        Quote copy = roundTrip(quote);
+        assertEquals(17000, copy.getStartDay());
+        assertEquals(17003, copy.getEndDay());
+    }
+
+    @Test
+    public void reservationDaysAreRecomputedAfterDeserialization() throws Exception {
+        Reservation copy = roundTrip(new Reservation(quote(-3, 2), null));
+        assertEquals(-3, copy.getStartDay());
+        assertEquals(2, copy.getEndDay());
+    }
+}
@@ -0,0 +1,123 @@
+package ds.gae.entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.appengine.api.datastore.KeyFactory;
+
+import ds.gae.storage.LocalEnvironment;
+
+public class ReservationIndexTest {
+
+    private static int nextId = 1;
+
+    @BeforeClass
+    public static void installEnvironment() {
+        LocalEnvironment.install();
+    }
+
+    static Reservation reservation(int startDay, int endDay) {
+        Reservation reservation = new Reservation();
+        reservation.setCarRenter("renter" + nextId);
+        reservation.setRentalCompany("company");
+        reservation.setCarType("type");
+        reservation.setStartDate(EpochDays.toDate(startDay));
+        reservation.setEndDate(EpochDays.toDate(endDay));
+        reservation.setCarId(KeyFactory.createKey("Car", 1));
+        reservation.setId(KeyFactory.createKey("Reservation", nextId++));
+        return reservation;
+    }
+
+    private static ReservationIndex index(Reservation... reservations) {
+        List<Reservation> list = new ArrayList<>();
+        Collections.addAll(list, reservations);
+        return new ReservationIndex(list);
+    }
+
+    @Test
+    public void emptyIndexOverlapsNothing() {
+        ReservationIndex index = index();
+        assertFalse(index.overlaps(0, 1));
+        assertEquals(Integer.MIN_VALUE, index.gapStart(0, 1));
+        assertEquals(Integer.MAX_VALUE, index.gapEnd(0, 1));
+    }
+
+    @Test
+    public void periodsThatTouchDoNotOverlap() {
+        ReservationIndex index = index(reservation(10, 15));
+        assertFalse(index.overlaps(15, 20));
+        assertFalse(index.overlaps(5, 10));
+        assertTrue(index.overlaps(14, 15));
+        assertTrue(index.overlaps(9, 11));
+        assertTrue(index.overlaps(10, 15));
+        assertTrue(index.overlaps(11, 12));
+        assertTrue(index.overlaps(0, 100));
+    }
+
+    @Test
+    public void longReservationIsFoundBehindLaterShortOnes() {
+        ReservationIndex index = index(reservation(0, 30), reservation(5, 6), reservation(12, 13));
+        assertTrue(index.overlaps(20, 25));
+        assertFalse(index.overlaps(30, 31));
+    }
+
+    @Test
+    public void removedReservationNoLongerOverlaps() {
+        Reservation first = reservation(10, 15);
+        Reservation second = reservation(20, 25);
+        ReservationIndex index = index(first);
+        index.add(second);
+        assertTrue(index.overlaps(22, 23));
+        assertTrue(index.remove(second));
+        assertFalse(index.overlaps(22, 23));
+        assertFalse(index.remove(second));
+        assertTrue(index.overlaps(12, 13));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void gapIsBoundedByTheNeighbouringReservations() {
+        ReservationIndex index = index(reservation(0, 10), reservation(3, 12), reservation(20, 25), reservation(30, 31));
+        assertEquals(12, index.gapStart(14, 16));
+        assertEquals(20, index.gapEnd(14, 16));
+        assertEquals(12, index.gapStart(12, 20));
+        assertEquals(20, index.gapEnd(12, 20));
+        assertEquals(31, index.gapStart(40, 41));
+        assertEquals(Integer.MAX_VALUE, index.gapEnd(40, 41));
+        assertEquals(Integer.MIN_VALUE, index.gapStart(-5, 0));
+        assertEquals(0, index.gapEnd(-5, 0));
+    }
+
+    @Test
+    public void overlapsAgreesWithBruteForce() {
+        Random random = new Random(1);
+        List<Reservation> reservations = new ArrayList<>();
+        ReservationIndex index = index();
+        for (int round = 0; round < 2000; round++) {
+            if (!reservations.isEmpty() && random.nextInt(4) == 0) {
+                Reservation removed = reservations.remove(random.nextInt(reservations.size()));
+                assertTrue(index.remove(removed));
+            } else {
+                int start = random.nextInt(200);
+                Reservation added = reservation(start, start + 1 + random.nextInt(20));
+                reservations.add(added);
+                index.add(added);
+            }
+            int start = random.nextInt(220) - 10;
+            int end = start + 1 + random.nextInt(15);
+            boolean expected = false;
+            for (Reservation reservation : reservations)
+                expected |= reservation.getStartDay() < end && start < reservation.getEndDay();
+            assertEquals("overlap with [" + start + ", " + end + ")", expected, index.overlaps(start, end));
+        }
+    }
+}
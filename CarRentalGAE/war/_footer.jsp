@@ -1,5 +1,5 @@
-	
-		</div> <!-- end of #contentWrapper -->
-	</div>
-</body>
-</html>
+	
+		</div> <!-- end of #contentWrapper -->
+	</div>
+</body>
+</html>
@@ -1,95 +1,95 @@
-﻿<%@page import="java.util.List"%>
-<%@page import="ds.gae.CarRentalModel"%>
-<%@page import="ds.gae.entities.Reservation"%>
-<%@page import="ds.gae.view.JSPSite"%>
-<%@page import="ds.gae.view.ViewTools"%>
-<%@ page language="java" contentType="text/html; charset=UTF-8"
-    pageEncoding="UTF-8"%>
-<% 
-	String renter = (String)session.getAttribute("renter");
-	JSPSite currentSite = JSPSite.RESERVATIONS;
-	
-%>   
- 
-<%@include file="_header.jsp" %>
-			
-<% 
-if (currentSite != JSPSite.LOGIN && currentSite != JSPSite.PERSIST_TEST && renter == null) {
- %>
-	<meta http-equiv="refresh" content="0;URL='/login.jsp'">
-<% 
-  request.getSession().setAttribute("lastSiteCall", currentSite);
-} 
- %>
-	<meta http-equiv="Content-Type" content="text/html; charset=UTF-8">
-	<link rel="stylesheet" type="text/css" href="style.css" />
-	<title>Car Rental Application</title>
-</head>
-<body>
-	<div id="mainWrapper">
-		<div id="headerWrapper">
-			<h1>Car Rental Application</h1>
-		</div>
-		<div id="navigationWrapper">
-			<ul>
-<% 
-for (JSPSite site : JSPSite.publiclyLinkedValues()) {
-	if (site == currentSite) {
- %> 
-				<li><a class="selected" href="<%=site.url()%>"><%=site.label()%></a></li>
-<% } else {
- %> 
-				<li><a href="<%=site.url()%>"><%=site.label()%></a></li>
-<% }}
- %> 
-
-				</ul>
-		</div>
-		<div id="contentWrapper">
-<% if (currentSite != JSPSite.LOGIN) { %>
-			<div id="userProfile">
-				<span>Logged-in as <%= renter %> (<a href="/login.jsp">change</a>)</span>
-			</div>
-<%
-   }
- %>
-			
-			
-	<% 
-	 %>
-			<div class="groupLabel">Current Reservations</div>
-			<div class="group">
-				<table>
-					<tr>
-						<th>Rental Company</th>					
-						<th>Car Type/ID</th>
-						<th>Rental Period</th>
-						<th>Rental Price</th>			
-					</tr>
-						
-	<%
-	List<Reservation> reservations = CarRentalModel.get().getReservations(renter);
-	
-	if ( reservations != null && reservations.size() > 0) {
-		
-		for (Reservation r : reservations) { 
-	 %>
-					<tr>
-						<td><%= r.getRentalCompany()%></td>
-						<td><%= r.getCarType()%>/<%= r.getCarId()%></td>
-						<td><%= ViewTools.DATE_FORMAT.format(r.getStartDate()) %> - <%= ViewTools.DATE_FORMAT.format(r.getEndDate())%></td>
-						<td class="numbers"><%= r.getRentalPrice()%> €</td>
-					</tr>
-	<%
-		} 
-	} else {
-	 %>
-					<tr><td colspan="6">No Reservations</td></tr>
-	<%
-	} 
-	 %>			
-				</table>
-
-			</div>
-
-<%@include file="_footer.jsp" %>
+﻿<%@page import="java.util.List"%>
+<%@page import="ds.gae.CarRentalModel"%>
+<%@page import="ds.gae.entities.Reservation"%>
+<%@page import="ds.gae.view.JSPSite"%>
+<%@page import="ds.gae.view.ViewTools"%>
+<%@ page language="java" contentType="text/html; charset=UTF-8"
+    pageEncoding="UTF-8"%>
+<% 
+	String renter = (String)session.getAttribute("renter");
+	JSPSite currentSite = JSPSite.RESERVATIONS;
+	
+%>   
+ 
+<%@include file="_header.jsp" %>
+			
+<% 
+if (currentSite != JSPSite.LOGIN && currentSite != JSPSite.PERSIST_TEST && renter == null) {
+ %>
+	<meta http-equiv="refresh" content="0;URL='/login.jsp'">
+<% 
+  request.getSession().setAttribute("lastSiteCall", currentSite);
+} 
+ %>
+	<meta http-equiv="Content-Type" content="text/html; charset=UTF-8">
+	<link rel="stylesheet" type="text/css" href="style.css" />
+	<title>Car Rental Application</title>
+</head>
+<body>
+	<div id="mainWrapper">
+		<div id="headerWrapper">
+			<h1>Car Rental Application</h1>
+		</div>
+		<div id="navigationWrapper">
+			<ul>
+<% 
+for (JSPSite site : JSPSite.publiclyLinkedValues()) {
+	if (site == currentSite) {
+ %> 
+				<li><a class="selected" href="<%=site.url()%>"><%=site.label()%></a></li>
+<% } else {
+ %> 
+				<li><a href="<%=site.url()%>"><%=site.label()%></a></li>
+<% }}
+ %> 
+
+				</ul>
+		</div>
+		<div id="contentWrapper">
+<% if (currentSite != JSPSite.LOGIN) { %>
+			<div id="userProfile">
+				<span>Logged-in as <%= renter %> (<a href="/login.jsp">change</a>)</span>
+			</div>
+<%
+   }
+ %>
+			
+			
+	<% 
+	 %>
+			<div class="groupLabel">Current Reservations</div>
+			<div class="group">
+				<table>
+					<tr>
+						<th>Rental Company</th>					
+						<th>Car Type/ID</th>
+						<th>Rental Period</th>
+						<th>Rental Price</th>			
+					</tr>
+						
+	<%
+	List<Reservation> reservations = CarRentalModel.get().getReservations(renter);
+	
+	if ( reservations != null && reservations.size() > 0) {
+		
+		for (Reservation r : reservations) { 
+	 %>
+					<tr>
+						<td><%= r.getRentalCompany()%></td>
+						<td><%= r.getCarType()%>/<%= r.getCarId()%></td>
+						<td><%= ViewTools.DATE_FORMAT.format(r.getStartDate()) %> - <%= ViewTools.DATE_FORMAT.format(r.getEndDate())%></td>
+						<td class="numbers"><%= r.getRentalPrice()%> €</td>
+					</tr>
+	<%
+		} 
+	} else {
+	 %>
+					<tr><td colspan="6">No Reservations</td></tr>
+	<%
+	} 
+	 %>			
+				</table>
+
+			</div>
+
+<%@include file="_footer.jsp" %>
@@ -1,63 +1,99 @@
-<%@page import="ds.gae.view.JSPSite"%>
-<%@ page language="java" contentType="text/html; charset=UTF-8"
-    pageEncoding="UTF-8"%>
-<% 
-	String renter = (String)session.getAttribute("renter");
-	JSPSite currentSite = JSPSite.CONFIRM_QUOTES_RESPONSE;
-
-%>   
- 
-<%@include file="_header.jsp" %>
-
-<% 
-if (currentSite != JSPSite.LOGIN && currentSite != JSPSite.PERSIST_TEST && renter == null) {
- %>
-	<meta http-equiv="refresh" content="0;URL='/login.jsp'">
-<% 
-  request.getSession().setAttribute("lastSiteCall", currentSite);
-} 
- %>
-	<meta http-equiv="Content-Type" content="text/html; charset=UTF-8">
-	<link rel="stylesheet" type="text/css" href="style.css" />
-	<title>Car Rental Application</title>
-</head>
-<body>
-	<div id="mainWrapper">
-		<div id="headerWrapper">
-			<h1>Car Rental Application</h1>
-		</div>
-		<div id="navigationWrapper">
-			<ul>
-<% 
-for (JSPSite site : JSPSite.publiclyLinkedValues()) {
-	if (site == currentSite) {
- %> 
-				<li><a class="selected" href="<%=site.url()%>"><%=site.label()%></a></li>
-<% } else {
- %> 
-				<li><a href="<%=site.url()%>"><%=site.label()%></a></li>
-<% }}
- %> 
-
-				</ul>
-		</div>
-		<div id="contentWrapper">
-<% if (currentSite != JSPSite.LOGIN) { %>
-			<div id="userProfile">
-				<span>Logged-in as <%= renter %> (<a href="/login.jsp">change</a>)</span>
-			</div>
-<%
-   }
- %>
-			<div class="frameDiv" style="margin: 150px 150px;">
-				<H2>Reply</H2>
-				<div class="group">
-					<p>
-					TODO: Here you can give some information to client who is currently 
-							logged in as user <%=renter%>.
-					</p>
-				</div>
-			</div>
-
-<%@include file="_footer.jsp" %>
-
+<%@page import="java.util.Collections"%>
+<%@page import="java.util.List"%>
+<%@page import="ds.gae.CarRentalModel"%>
+<%@page import="ds.gae.entities.Confirmation"%>
+<%@page import="ds.gae.view.JSPSite"%>
+<%@page import="ds.gae.view.ViewTools"%>
+<%@ page language="java" contentType="text/html; charset=UTF-8"
+    pageEncoding="UTF-8"%>
+<% 
+	String renter = (String)session.getAttribute("renter");
+	JSPSite currentSite = JSPSite.CONFIRM_QUOTES_RESPONSE;
+	// without a renter the page only redirects to the login page
+	List<Confirmation> confirmations = renter == null
+			? Collections.<Confirmation>emptyList() : CarRentalModel.get().getConfirmations(renter);
+	boolean anyPending = false;
+	for (Confirmation c : confirmations) {
+		anyPending |= !c.isDone();
+	}
+%>   
+ 
+<%@include file="_header.jsp" %>
+<% if (anyPending) { %>
+	<meta http-equiv="refresh" content="2">
+<% } %>
+
+<% 
+if (currentSite != JSPSite.LOGIN && currentSite != JSPSite.PERSIST_TEST && renter == null) {
+ %>
+	<meta http-equiv="refresh" content="0;URL='/login.jsp'">
+<% 
+  request.getSession().setAttribute("lastSiteCall", currentSite);
+} 
+ %>
+	<meta http-equiv="Content-Type" content="text/html; charset=UTF-8">
+	<link rel="stylesheet" type="text/css" href="style.css" />
+	<title>Car Rental Application</title>
+</head>
+<body>
+	<div id="mainWrapper">
+		<div id="headerWrapper">
+			<h1>Car Rental Application</h1>
+		</div>
+		<div id="navigationWrapper">
+			<ul>
+<% 
+for (JSPSite site : JSPSite.publiclyLinkedValues()) {
+	if (site == currentSite) {
+ %> 
+				<li><a class="selected" href="<%=site.url()%>"><%=site.label()%></a></li>
+<% } else {
+ %> 
+				<li><a href="<%=site.url()%>"><%=site.label()%></a></li>
+<% }}
+ %> 
+
+				</ul>
+		</div>
+		<div id="contentWrapper">
+<% if (currentSite != JSPSite.LOGIN) { %>
+			<div id="userProfile">
+				<span>Logged-in as <%= renter %> (<a href="/login.jsp">change</a>)</span>
+			</div>
+<%
+   }
+ %>
+			<div class="frameDiv" style="margin: 150px 150px;">
+				<H2>Reply</H2>
+				<div class="group">
+					<table>
+						<tr>
+							<th>Submitted</th>
+							<th class="numbers"># Quotes</th>
+							<th>Status</th>
+							<th>Message</th>
+						</tr>
+<% 
+	if (confirmations.size() > 0) {
+		for (Confirmation c : confirmations) {
+ %>
+						<tr>
+							<td><%= ViewTools.DATE_FORMAT.format(c.getCreated()) %></td>
+							<td class="numbers"><%= c.getNbOfQuotes() %></td>
+							<td><%= c.getStatus() %></td>
+							<td><%= c.getMessage() == null ? "" : ViewTools.encodeHTML(c.getMessage()) %></td>
+						</tr>
+<%
+		}
+	} else {
+ %>
+						<tr><td colspan="4">No confirmations</td></tr>
+<%
+	}
+ %>
+					</table>
+				</div>
+			</div>
+
+<%@include file="_footer.jsp" %>
+
@@ -0,0 +1,137 @@
+package ds.gae.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ds.gae.ReservationException;
+import ds.gae.entities.CarAssignmentStrategy;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Quote;
+
+/**
+ * Simulates a season of bookings to compare car assignment strategies.
+ *
+ * Every invocation books the same synthetic demand on an empty company: mostly
+ * short rentals and some long ones, spread over {@link #SEASON_DAYS} days and
+ * booked in random order rather than in order of their start day. The offered
+ * load is the number of car days asked for, relative to the car days the fleet has.
+ *
+ * The interesting results are the secondary counters: accepted and rejected
+ * bookings and the accepted car days. Their ratios to the demand are the acceptance
+ * rates of a strategy; rejections below a load of 1 are due to fragmentation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CarAssignmentBenchmark {
+
+    static final int SEASON_DAYS = 365;
+    // keeps the configured level, loggers are only weakly referenced
+    private static final Logger domainLogger = Logger.getLogger("ds.gae");
+
+    @Param({"hertz.csv"})
+    public String fleet;
+
+    @Param({"10"})
+    public int carsPerType;
+
+    @Param({"0.8", "1.0"})
+    public double load;
+
+    @Param({"random", "firstFit", "bestFit"})
+    public String strategy;
+
+    private Quote[] demand;
+    private CarRentalCompany company;
+
+    /**
+     * Outcome of the simulated seasons, summed over the invocations of an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bookings {
+
+        public long accepted;
+        public long rejected;
+        public long acceptedCarDays;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            accepted = 0;
+            rejected = 0;
+            acceptedCarDays = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUpDemand() throws IOException {
+        domainLogger.setLevel(java.util.logging.Level.WARNING);
+        // the same demand for every strategy
+        Random random = new Random(42);
+        List<CarType> carTypes = new ArrayList<>(
+                Fleets.generate(fleet, carsPerType, 0, SEASON_DAYS, random).getCarTypes());
+        long carDays = (long) carTypes.size() * carsPerType * SEASON_DAYS;
+        List<Quote> quotes = new ArrayList<>();
+        for (long offered = 0; offered < load * carDays; ) {
+            CarType type = carTypes.get(random.nextInt(carTypes.size()));
+            // three out of four rentals take 1 to 4 days, the others 7 to 21 days
+            int length = random.nextInt(4) > 0 ? 1 + random.nextInt(4) : 7 + random.nextInt(15);
+            int start = random.nextInt(SEASON_DAYS - length + 1);
+            quotes.add(quote(type, start, length));
+            offered += length;
+        }
+        demand = quotes.toArray(new Quote[quotes.size()]);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpCompany() throws IOException {
+        company = Fleets.generate(fleet, carsPerType, 0, SEASON_DAYS, new Random(42));
+        company.setCarAssignmentStrategy(CarAssignmentStrategy.forName(strategy));
+    }
+
+    private static Quote quote(CarType type, int start, int length) {
+        Quote quote = new Quote();
+        quote.setCarRenter("benchmark");
+        quote.setRentalCompany(Fleets.class.getSimpleName());
+        quote.setCarType(type.getName());
+        quote.setStartDate(Fleets.day(start));
+        quote.setEndDate(Fleets.day(start + length));
+        quote.setRentalPrice(length * type.getRentalPricePerDay());
+        return quote;
+    }
+
+    @Benchmark
+    public void bookSeason(Bookings bookings) {
+        for (Quote quote : demand) {
+            try {
+                company.confirmQuote(quote);
+                bookings.accepted++;
+                bookings.acceptedCarDays += quote.getEndDay() - quote.getStartDay();
+            } catch (ReservationException e) {
+                bookings.rejected++;
+            }
+        }
+    }
+}
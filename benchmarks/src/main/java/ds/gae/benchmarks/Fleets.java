@@ -0,0 +1,122 @@
+package ds.gae.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.appengine.api.datastore.KeyFactory;
+
+import ds.gae.entities.Car;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Reservation;
+import ds.gae.storage.LocalEnvironment;
+
+/**
+ * Generates in-memory car rental companies with a reservation history, from the 
+ * car types of a fleet file in the format of hertz.csv and dockx.csv.
+ */
+public final class Fleets {
+
+    /**
+     * First day of the generated reservation histories.
+     */
+    public static final Date HISTORY_START = date(2012, Calendar.JANUARY, 1);
+
+    private static long nextId = 1;
+
+    private Fleets() {}
+
+    /**
+     * Generate a company with the car types of the given fleet file.
+     * 
+     * @param   datafile
+     *          fleet file on the class path, e.g. hertz.csv
+     * @param   carsPerType
+     *          number of cars of every car type, or 0 to use the numbers of the fleet file
+     * @param   reservationsPerCar
+     *          number of reservations in the history of every car
+     * @param   historyDays
+     *          number of days, starting at {@link #HISTORY_START}, covered by the histories
+     * @param   random
+     *          source of the reservation periods
+     */
+    public static CarRentalCompany generate(String datafile, int carsPerType, int reservationsPerCar, 
+            int historyDays, Random random) throws IOException {
+        LocalEnvironment.install();
+        String name = datafile.substring(0, datafile.indexOf('.'));
+        Set<CarType> carTypes = new HashSet<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                Fleets.class.getClassLoader().getResourceAsStream(datafile), "UTF-8"))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#") || line.trim().isEmpty())
+                    continue;
+                String[] fields = line.split(",");
+                CarType type = new CarType(fields[0], Integer.parseInt(fields[1]), Float.parseFloat(fields[2]),
+                        Double.parseDouble(fields[3]), Boolean.parseBoolean(fields[4]));
+                type.setId(KeyFactory.createKey("CarType", nextId++));
+                int nbOfCars = (carsPerType > 0) ? carsPerType : Integer.parseInt(fields[5]);
+                Set<Car> cars = new HashSet<>();
+                for (int i = 0; i < nbOfCars; i++) {
+                    Car car = new Car();
+                    car.setId(KeyFactory.createKey("Car", nextId++));
+                    cars.add(car);
+                }
+                type.setCars(cars);
+                carTypes.add(type);
+            }
+        }
+        CarRentalCompany company = new CarRentalCompany(name, carTypes);
+        for (CarType type : carTypes) {
+            for (Car car : type.getCars())
+                addHistory(company, type, car, reservationsPerCar, historyDays, random);
+        }
+        return company;
+    }
+
+    // spreads non-overlapping reservations evenly over the history, with random lengths and gaps
+    private static void addHistory(CarRentalCompany company, CarType type, Car car, 
+            int nbOfReservations, int historyDays, Random random) {
+        if (nbOfReservations == 0)
+            return;
+        int slot = Math.max(2, historyDays / nbOfReservations);
+        for (int i = 0; i < nbOfReservations; i++) {
+            int length = 1 + random.nextInt(Math.min(14, slot - 1));
+            int offset = random.nextInt(slot - length);
+            int start = i * slot + offset;
+            Reservation res = new Reservation();
+            res.setId(KeyFactory.createKey("Reservation", nextId++));
+            res.setCarId(car.getId());
+            res.setCarRenter("renter" + random.nextInt(1000));
+            res.setRentalCompany(company.getName());
+            res.setCarType(type.getName());
+            res.setStartDate(day(start));
+            res.setEndDate(day(start + length));
+            res.setRentalPrice(length * type.getRentalPricePerDay());
+            type.addReservation(car, res);
+        }
+    }
+
+    /**
+     * Get the date that is the given number of days after {@link #HISTORY_START}.
+     */
+    public static Date day(int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(HISTORY_START);
+        calendar.add(Calendar.DAY_OF_MONTH, day);
+        return calendar.getTime();
+    }
+
+    private static Date date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTime();
+    }
+}
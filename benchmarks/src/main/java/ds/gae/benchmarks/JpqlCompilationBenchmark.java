@@ -0,0 +1,154 @@
+package ds.gae.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+
+import org.datanucleus.ClassLoaderResolver;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.metadata.MetaDataManager;
+import org.datanucleus.query.cache.QueryCompilationCache;
+import org.datanucleus.query.cache.SoftQueryCompilationCache;
+import org.datanucleus.query.cache.StrongQueryCompilationCache;
+import org.datanucleus.query.compiler.JPQLCompiler;
+import org.datanucleus.query.compiler.QueryCompilation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ds.gae.entities.ArchivedReservation;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.Confirmation;
+import ds.gae.entities.Reservation;
+
+/**
+ * The cost of looking up the compilation of the named queries of the entities in
+ * the query compilation cache of DataNucleus, the JPA implementation of App Engine,
+ * as every <code>createQuery</code> does, and the cost of compiling them on a miss.
+ *
+ * The baseline is the soft cache that DataNucleus has by default, against the strong
+ * cache of persistence.xml. Both look up compilations by the text of the query, so
+ * as long as memory is plentiful both hit and cost the same. The strong cache only
+ * pays off when the garbage collector clears soft references under memory pressure:
+ * every query then costs a compilation again, see {@link #compile()}.
+ *
+ * Needs the DataNucleus jars of the web application on the class path, see pom.xml.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JpqlCompilationBenchmark {
+
+    private static final Class<?>[] ENTITIES = {
+        Reservation.class, ArchivedReservation.class, Confirmation.class, CarRentalCompany.class
+    };
+    // the shape of the named queries: SELECT result FROM Entity alias [WHERE filter]
+    private static final Pattern QUERY = Pattern.compile("SELECT (.+) FROM (\\w+) (\\w+)(?: WHERE (.+))?");
+
+    @Param({Reservation.BY_RENTER, Reservation.IDS_BY_RENTER, ArchivedReservation.BY_RENTER,
+            Confirmation.BY_RENTER, CarRentalCompany.NAMES})
+    public String query;
+
+    private MetaDataManager metaData;
+    private ClassLoaderResolver classLoader;
+    private Class<?> candidate;
+    private String from;
+    private String filter;
+    private String result;
+    private QueryCompilationCache softCache;
+    private QueryCompilationCache strongCache;
+    private String key;
+
+    @Setup
+    public void setUp() {
+        NucleusContext context = new NucleusContext("JPA", new HashMap<String, Object>());
+        metaData = context.getMetaDataManager();
+        classLoader = context.getClassLoaderResolver(getClass().getClassLoader());
+        String text = null;
+        for (Class<?> entity : ENTITIES) {
+            // loads the metadata, so the queries can refer to the entity by name
+            metaData.getMetaDataForClass(entity, classLoader);
+            for (NamedQuery named : namedQueries(entity)) {
+                if (named.name().equals(query)) {
+                    text = named.query();
+                    candidate = entity;
+                }
+            }
+        }
+        if (text == null)
+            throw new IllegalArgumentException("No named query " + query);
+        Matcher matcher = QUERY.matcher(text);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Unsupported query " + text);
+        result = matcher.group(1);
+        from = candidate.getName() + " " + matcher.group(3);
+        filter = matcher.group(4);
+
+        // DataNucleus keys compilations by the text of the query
+        key = text;
+        softCache = new SoftQueryCompilationCache(context);
+        strongCache = new StrongQueryCompilationCache(context);
+    }
+
+    private static NamedQuery[] namedQueries(Class<?> entity) {
+        NamedQueries all = entity.getAnnotation(NamedQueries.class);
+        if (all != null)
+            return all.value();
+        NamedQuery single = entity.getAnnotation(NamedQuery.class);
+        return single != null ? new NamedQuery[]{single} : new NamedQuery[0];
+    }
+
+    /**
+     * What a query costs when its compilation is not cached, e.g. after the garbage
+     * collector cleared it from the soft cache.
+     */
+    @Benchmark
+    public QueryCompilation compile() {
+        JPQLCompiler compiler = new JPQLCompiler(metaData, classLoader, from, candidate, null,
+                filter, null, null, result, null, null, null, null);
+        Map<String, Object> parameters = new HashMap<>();
+        return compiler.compile(parameters, null);
+    }
+
+    /**
+     * What repeated queries cost with the default soft cache.
+     */
+    @Benchmark
+    public QueryCompilation softCache() {
+        return lookUp(softCache);
+    }
+
+    /**
+     * What repeated queries cost with the strong cache.
+     */
+    @Benchmark
+    public QueryCompilation strongCache() {
+        return lookUp(strongCache);
+    }
+
+    // as the query of DataNucleus does before it compiles
+    private QueryCompilation lookUp(QueryCompilationCache cache) {
+        QueryCompilation compilation = cache.get(key);
+        if (compilation == null) {
+            compilation = compile();
+            cache.put(key, compilation);
+        }
+        return compilation;
+    }
+}
@@ -0,0 +1,154 @@
+package ds.gae.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ds.gae.ReservationException;
+import ds.gae.entities.Car;
+import ds.gae.entities.CarRentalCompany;
+import ds.gae.entities.CarType;
+import ds.gae.entities.Quote;
+import ds.gae.entities.Reservation;
+import ds.gae.entities.ReservationConstraints;
+
+/**
+ * Hot paths of the reservation domain model on an in-memory company.
+ * 
+ * The fleet size, the reservation density (reservations per car over a history 
+ * of {@link #HISTORY_DAYS} days) and the length of the queried period are parameters. 
+ * Queried periods are drawn up front and cycled through, so the measurements 
+ * do not include random number generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationBenchmark {
+
+    static final int HISTORY_DAYS = 3 * 365;
+    private static final int NB_OF_QUERIES = 1024;
+    // keeps the configured level, loggers are only weakly referenced
+    private static final Logger domainLogger = Logger.getLogger("ds.gae");
+
+    @Param({"hertz.csv"})
+    public String fleet;
+
+    @Param({"10", "100"})
+    public int carsPerType;
+
+    @Param({"10", "100", "1000"})
+    public int reservationsPerCar;
+
+    @Param({"3", "30"})
+    public int windowDays;
+
+    private CarRentalCompany company;
+    private Car[] cars;
+    private ReservationConstraints[] queries;
+    private Quote[] quotes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        domainLogger.setLevel(Level.WARNING);
+        Random random = new Random(42);
+        company = Fleets.generate(fleet, carsPerType, reservationsPerCar, HISTORY_DAYS, random);
+
+        List<Car> allCars = new ArrayList<>(company.getCars());
+        List<CarType> carTypes = new ArrayList<>(company.getCarTypes());
+        cars = new Car[NB_OF_QUERIES];
+        queries = new ReservationConstraints[NB_OF_QUERIES];
+        quotes = new Quote[NB_OF_QUERIES];
+        for (int i = 0; i < NB_OF_QUERIES; i++) {
+            int start = random.nextInt(HISTORY_DAYS - windowDays);
+            Date startDate = Fleets.day(start);
+            Date endDate = Fleets.day(start + windowDays);
+            CarType type = carTypes.get(random.nextInt(carTypes.size()));
+            cars[i] = allCars.get(random.nextInt(allCars.size()));
+            queries[i] = new ReservationConstraints(startDate, endDate, type.getName());
+            quotes[i] = quote(type, startDate, endDate);
+        }
+    }
+
+    private Quote quote(CarType type, Date start, Date end) {
+        Quote quote = new Quote();
+        quote.setCarRenter("benchmark");
+        quote.setRentalCompany(company.getName());
+        quote.setCarType(type.getName());
+        quote.setStartDate(start);
+        quote.setEndDate(end);
+        quote.setRentalPrice(windowDays * type.getRentalPricePerDay());
+        return quote;
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (NB_OF_QUERIES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean carIsAvailable() {
+        int i = nextQuery();
+        return cars[i].isAvailable(queries[i].getStartDate(), queries[i].getEndDate());
+    }
+
+    /**
+     * The overlap check on epoch days, as done for quotes, without converting dates.
+     */
+    @Benchmark
+    public boolean carIsAvailableOnDays() {
+        int i = nextQuery();
+        return cars[i].isAvailable(quotes[i].getStartDay(), quotes[i].getEndDay());
+    }
+
+    @Benchmark
+    public Set<CarType> getAvailableCarTypes() {
+        ReservationConstraints query = queries[nextQuery()];
+        return company.getAvailableCarTypes(query.getStartDate(), query.getEndDate());
+    }
+
+    @Benchmark
+    public Quote createQuote() {
+        try {
+            return company.createQuote(queries[nextQuery()], "benchmark");
+        } catch (ReservationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Confirms a quote and cancels the resulting reservation again, 
+     * so the reservation density stays the same.
+     */
+    @Benchmark
+    public Reservation confirmQuote() {
+        try {
+            Reservation reservation = company.confirmQuote(quotes[nextQuery()]);
+            company.cancelReservation(reservation);
+            return reservation;
+        } catch (ReservationException e) {
+            return null;
+        }
+    }
+}